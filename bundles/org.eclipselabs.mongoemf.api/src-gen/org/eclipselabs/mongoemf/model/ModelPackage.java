@@ -137,6 +137,15 @@ public class ModelPackage extends EPackageImpl
 	 */
 	public static final int MONGO_CURSOR__OBJECT_BUILDER = ITERABLE_FEATURE_COUNT + 2;
 
+	/**
+	 * The feature id for the '<em><b>Page Size</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_CURSOR__PAGE_SIZE = ITERABLE_FEATURE_COUNT + 3;
+
 	/**
 	 * The number of structural features of the '<em>Mongo Cursor</em>' class.
 	 * <!-- begin-user-doc -->
@@ -144,7 +153,7 @@ public class ModelPackage extends EPackageImpl
 	 * @generated
 	 * @ordered
 	 */
-	public static final int MONGO_CURSOR_FEATURE_COUNT = ITERABLE_FEATURE_COUNT + 3;
+	public static final int MONGO_CURSOR_FEATURE_COUNT = ITERABLE_FEATURE_COUNT + 4;
 
 	/**
 	 * The operation id for the '<em>Iterator</em>' operation.
@@ -219,6 +228,51 @@ public class ModelPackage extends EPackageImpl
 	 */
 	public static final int MONGO_QUERY__LIMIT = 4;
 
+	/**
+	 * The feature id for the '<em><b>Batch Size</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__BATCH_SIZE = 5;
+
+	/**
+	 * The feature id for the '<em><b>Max Time MS</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__MAX_TIME_MS = 6;
+
+	/**
+	 * The feature id for the '<em><b>Max Scan</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__MAX_SCAN = 7;
+
+	/**
+	 * The feature id for the '<em><b>Hint</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__HINT = 8;
+
+	/**
+	 * The feature id for the '<em><b>No Cursor Timeout</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @generated
+	 * @ordered
+	 */
+	public static final int MONGO_QUERY__NO_CURSOR_TIMEOUT = 9;
+
 	/**
 	 * The number of structural features of the '<em>Mongo Query</em>' class.
 	 * <!-- begin-user-doc -->
@@ -226,7 +280,7 @@ public class ModelPackage extends EPackageImpl
 	 * @generated
 	 * @ordered
 	 */
-	public static final int MONGO_QUERY_FEATURE_COUNT = 5;
+	public static final int MONGO_QUERY_FEATURE_COUNT = 10;
 
 	/**
 	 * The number of operations of the '<em>Mongo Query</em>' class.
@@ -479,6 +533,20 @@ public class ModelPackage extends EPackageImpl
 		return (EAttribute)mongoCursorEClass.getEStructuralFeatures().get(2);
 	}
 
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoCursor#getPageSize <em>Page Size</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Page Size</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoCursor#getPageSize()
+	 * @see #getMongoCursor()
+	 * @generated
+	 */
+	public EAttribute getMongoCursor_PageSize()
+	{
+		return (EAttribute)mongoCursorEClass.getEStructuralFeatures().get(3);
+	}
+
 	/**
 	 * Returns the meta object for the '{@link org.eclipselabs.mongoemf.model.MongoCursor#iterator() <em>Iterator</em>}' operation.
 	 * <!-- begin-user-doc -->
@@ -575,6 +643,76 @@ public class ModelPackage extends EPackageImpl
 		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(4);
 	}
 
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize <em>Batch Size</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Batch Size</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_BatchSize()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(5);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS <em>Max Time MS</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Max Time MS</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_MaxTimeMS()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(6);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxScan <em>Max Scan</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Max Scan</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getMaxScan()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_MaxScan()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(7);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getHint <em>Hint</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>Hint</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getHint()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_Hint()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(8);
+	}
+
+	/**
+	 * Returns the meta object for the attribute '{@link org.eclipselabs.mongoemf.model.MongoQuery#getNoCursorTimeout <em>No Cursor Timeout</em>}'.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @return the meta object for the attribute '<em>No Cursor Timeout</em>'.
+	 * @see org.eclipselabs.mongoemf.model.MongoQuery#getNoCursorTimeout()
+	 * @see #getMongoQuery()
+	 * @generated
+	 */
+	public EAttribute getMongoQuery_NoCursorTimeout()
+	{
+		return (EAttribute)mongoQueryEClass.getEStructuralFeatures().get(9);
+	}
+
 	/**
 	 * Returns the meta object for data type '{@link com.mongodb.DBObject <em>DB Object</em>}'.
 	 * <!-- begin-user-doc -->
@@ -683,6 +821,7 @@ public class ModelPackage extends EPackageImpl
 		createEAttribute(mongoCursorEClass, MONGO_CURSOR__DB_CURSOR);
 		createEAttribute(mongoCursorEClass, MONGO_CURSOR__DB_COLLECTION);
 		createEAttribute(mongoCursorEClass, MONGO_CURSOR__OBJECT_BUILDER);
+		createEAttribute(mongoCursorEClass, MONGO_CURSOR__PAGE_SIZE);
 		createEOperation(mongoCursorEClass, MONGO_CURSOR___ITERATOR);
 
 		mongoQueryEClass = createEClass(MONGO_QUERY);
@@ -691,6 +830,11 @@ public class ModelPackage extends EPackageImpl
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__SORT);
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__SKIP);
 		createEAttribute(mongoQueryEClass, MONGO_QUERY__LIMIT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__BATCH_SIZE);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__MAX_TIME_MS);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__MAX_SCAN);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__HINT);
+		createEAttribute(mongoQueryEClass, MONGO_QUERY__NO_CURSOR_TIMEOUT);
 
 		// Create data types
 		dbObjectEDataType = createEDataType(DB_OBJECT);
@@ -741,6 +885,7 @@ public class ModelPackage extends EPackageImpl
 		initEAttribute(getMongoCursor_DbCursor(), this.getDBCursor(), "dbCursor", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoCursor_DbCollection(), this.getDBCollection(), "dbCollection", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoCursor_ObjectBuilder(), this.getEObjectBuilder(), "objectBuilder", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoCursor_PageSize(), theEcorePackage.getEIntegerObject(), "pageSize", null, 0, 1, MongoCursor.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 
 		initEOperation(getMongoCursor__Iterator(), this.getIterator(), "iterator", 0, 1, !IS_UNIQUE, IS_ORDERED);
 
@@ -750,6 +895,11 @@ public class ModelPackage extends EPackageImpl
 		initEAttribute(getMongoQuery_Sort(), this.getDBObject(), "sort", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoQuery_Skip(), theEcorePackage.getEIntegerObject(), "skip", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 		initEAttribute(getMongoQuery_Limit(), theEcorePackage.getEIntegerObject(), "limit", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_BatchSize(), theEcorePackage.getEIntegerObject(), "batchSize", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_MaxTimeMS(), theEcorePackage.getELongObject(), "maxTimeMS", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_MaxScan(), theEcorePackage.getEIntegerObject(), "maxScan", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_Hint(), this.getDBObject(), "hint", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
+		initEAttribute(getMongoQuery_NoCursorTimeout(), theEcorePackage.getEBooleanObject(), "noCursorTimeout", null, 0, 1, MongoQuery.class, !IS_TRANSIENT, !IS_VOLATILE, IS_CHANGEABLE, !IS_UNSETTABLE, !IS_ID, !IS_UNIQUE, !IS_DERIVED, IS_ORDERED);
 
 		// Initialize data types
 		initEDataType(dbObjectEDataType, DBObject.class, "DBObject", IS_SERIALIZABLE, !IS_GENERATED_INSTANCE_CLASS);
@@ -821,6 +971,14 @@ public class ModelPackage extends EPackageImpl
 		 */
 		public static final EAttribute MONGO_CURSOR__OBJECT_BUILDER = eINSTANCE.getMongoCursor_ObjectBuilder();
 
+		/**
+		 * The meta object literal for the '<em><b>Page Size</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_CURSOR__PAGE_SIZE = eINSTANCE.getMongoCursor_PageSize();
+
 		/**
 		 * The meta object literal for the '<em><b>Iterator</b></em>' operation.
 		 * <!-- begin-user-doc -->
@@ -879,6 +1037,46 @@ public class ModelPackage extends EPackageImpl
 		 */
 		public static final EAttribute MONGO_QUERY__LIMIT = eINSTANCE.getMongoQuery_Limit();
 
+		/**
+		 * The meta object literal for the '<em><b>Batch Size</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__BATCH_SIZE = eINSTANCE.getMongoQuery_BatchSize();
+
+		/**
+		 * The meta object literal for the '<em><b>Max Time MS</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__MAX_TIME_MS = eINSTANCE.getMongoQuery_MaxTimeMS();
+
+		/**
+		 * The meta object literal for the '<em><b>Max Scan</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__MAX_SCAN = eINSTANCE.getMongoQuery_MaxScan();
+
+		/**
+		 * The meta object literal for the '<em><b>Hint</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__HINT = eINSTANCE.getMongoQuery_Hint();
+
+		/**
+		 * The meta object literal for the '<em><b>No Cursor Timeout</b></em>' attribute feature.
+		 * <!-- begin-user-doc -->
+		 * <!-- end-user-doc -->
+		 * @generated
+		 */
+		public static final EAttribute MONGO_QUERY__NO_CURSOR_TIMEOUT = eINSTANCE.getMongoQuery_NoCursorTimeout();
+
 		/**
 		 * The meta object literal for the '<em>DB Object</em>' data type.
 		 * <!-- begin-user-doc -->
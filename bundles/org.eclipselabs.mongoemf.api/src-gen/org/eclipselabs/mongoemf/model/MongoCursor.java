@@ -38,6 +38,7 @@ import org.eclipselabs.mongoemf.util.MongoIterator;
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getDbCursor <em>Db Cursor</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getDbCollection <em>Db Collection</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getObjectBuilder <em>Object Builder</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoCursor#getPageSize <em>Page Size</em>}</li>
  * </ul>
  * </p>
  *
@@ -107,6 +108,26 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 	 */
 	protected EObjectBuilder objectBuilder = OBJECT_BUILDER_EDEFAULT;
 
+	/**
+	 * The default value of the '{@link #getPageSize() <em>Page Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getPageSize()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Integer PAGE_SIZE_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getPageSize() <em>Page Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getPageSize()
+	 * @generated
+	 * @ordered
+	 */
+	protected Integer pageSize = PAGE_SIZE_EDEFAULT;
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -233,17 +254,52 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_CURSOR__OBJECT_BUILDER, oldObjectBuilder, objectBuilder));
 	}
 
+	/**
+	 * Returns the value of the '<em><b>Page Size</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Page Size</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Page Size</em>' attribute.
+	 * @see #setPageSize(Integer)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoCursor_PageSize()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Integer getPageSize()
+	{
+		return pageSize;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoCursor#getPageSize <em>Page Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Page Size</em>' attribute.
+	 * @see #getPageSize()
+	 * @generated
+	 */
+	public void setPageSize(Integer newPageSize)
+	{
+		Integer oldPageSize = pageSize;
+		pageSize = newPageSize;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_CURSOR__PAGE_SIZE, oldPageSize, pageSize));
+	}
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
 	 * @model dataType="org.eclipselabs.mongoemf.model.Iterator" unique="false"
-	 *        annotation="http://www.eclipse.org/emf/2002/GenModel body='<%org.eclipse.emf.ecore.resource.Resource%> _eResource = this.eResource();\nreturn new <%org.eclipselabs.mongoemf.util.MongoIterator%>(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder);'"
+	 *        annotation="http://www.eclipse.org/emf/2002/GenModel body='<%org.eclipse.emf.ecore.resource.Resource%> _eResource = this.eResource();\nreturn new <%org.eclipselabs.mongoemf.util.MongoIterator%>(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder, this.pageSize);'"
 	 * @generated
 	 */
 	public Iterator<EObject> iterator()
 	{
 		Resource _eResource = this.eResource();
-		return new MongoIterator(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder);
+		return new MongoIterator(this.dbCursor, this.dbCollection, _eResource, this.objectBuilder, this.pageSize);
 	}
 
 	/**
@@ -262,6 +318,8 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 				return getDbCollection();
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				return getObjectBuilder();
+			case ModelPackage.MONGO_CURSOR__PAGE_SIZE:
+				return getPageSize();
 		}
 		return super.eGet(featureID, resolve, coreType);
 	}
@@ -285,6 +343,9 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				setObjectBuilder((EObjectBuilder)newValue);
 				return;
+			case ModelPackage.MONGO_CURSOR__PAGE_SIZE:
+				setPageSize((Integer)newValue);
+				return;
 		}
 		super.eSet(featureID, newValue);
 	}
@@ -308,6 +369,9 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				setObjectBuilder(OBJECT_BUILDER_EDEFAULT);
 				return;
+			case ModelPackage.MONGO_CURSOR__PAGE_SIZE:
+				setPageSize(PAGE_SIZE_EDEFAULT);
+				return;
 		}
 		super.eUnset(featureID);
 	}
@@ -328,6 +392,8 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 				return DB_COLLECTION_EDEFAULT == null ? dbCollection != null : !DB_COLLECTION_EDEFAULT.equals(dbCollection);
 			case ModelPackage.MONGO_CURSOR__OBJECT_BUILDER:
 				return OBJECT_BUILDER_EDEFAULT == null ? objectBuilder != null : !OBJECT_BUILDER_EDEFAULT.equals(objectBuilder);
+			case ModelPackage.MONGO_CURSOR__PAGE_SIZE:
+				return PAGE_SIZE_EDEFAULT == null ? pageSize != null : !PAGE_SIZE_EDEFAULT.equals(pageSize);
 		}
 		return super.eIsSet(featureID);
 	}
@@ -365,6 +431,8 @@ public class MongoCursor extends MinimalEObjectImpl.Container implements EObject
 		result.append(dbCollection);
 		result.append(", objectBuilder: ");
 		result.append(objectBuilder);
+		result.append(", pageSize: ");
+		result.append(pageSize);
 		result.append(')');
 		return result.toString();
 	}
@@ -25,6 +25,11 @@ import org.eclipse.emf.ecore.impl.MinimalEObjectImpl;
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getSort <em>Sort</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getSkip <em>Skip</em>}</li>
  *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getLimit <em>Limit</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize <em>Batch Size</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS <em>Max Time MS</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxScan <em>Max Scan</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getHint <em>Hint</em>}</li>
+ *   <li>{@link org.eclipselabs.mongoemf.model.MongoQuery#getNoCursorTimeout <em>No Cursor Timeout</em>}</li>
  * </ul>
  * </p>
  *
@@ -134,6 +139,106 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 	 */
 	protected Integer limit = LIMIT_EDEFAULT;
 
+	/**
+	 * The default value of the '{@link #getBatchSize() <em>Batch Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getBatchSize()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Integer BATCH_SIZE_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getBatchSize() <em>Batch Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getBatchSize()
+	 * @generated
+	 * @ordered
+	 */
+	protected Integer batchSize = BATCH_SIZE_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getMaxTimeMS() <em>Max Time MS</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getMaxTimeMS()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Long MAX_TIME_MS_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getMaxTimeMS() <em>Max Time MS</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getMaxTimeMS()
+	 * @generated
+	 * @ordered
+	 */
+	protected Long maxTimeMS = MAX_TIME_MS_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getMaxScan() <em>Max Scan</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getMaxScan()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Integer MAX_SCAN_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getMaxScan() <em>Max Scan</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getMaxScan()
+	 * @generated
+	 * @ordered
+	 */
+	protected Integer maxScan = MAX_SCAN_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getHint() <em>Hint</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getHint()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final DBObject HINT_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getHint() <em>Hint</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getHint()
+	 * @generated
+	 * @ordered
+	 */
+	protected DBObject hint = HINT_EDEFAULT;
+
+	/**
+	 * The default value of the '{@link #getNoCursorTimeout() <em>No Cursor Timeout</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getNoCursorTimeout()
+	 * @generated
+	 * @ordered
+	 */
+	protected static final Boolean NO_CURSOR_TIMEOUT_EDEFAULT = null;
+
+	/**
+	 * The cached value of the '{@link #getNoCursorTimeout() <em>No Cursor Timeout</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @see #getNoCursorTimeout()
+	 * @generated
+	 * @ordered
+	 */
+	protected Boolean noCursorTimeout = NO_CURSOR_TIMEOUT_EDEFAULT;
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -330,6 +435,181 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__LIMIT, oldLimit, limit));
 	}
 
+	/**
+	 * Returns the value of the '<em><b>Batch Size</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Batch Size</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Batch Size</em>' attribute.
+	 * @see #setBatchSize(Integer)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_BatchSize()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Integer getBatchSize()
+	{
+		return batchSize;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getBatchSize <em>Batch Size</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Batch Size</em>' attribute.
+	 * @see #getBatchSize()
+	 * @generated
+	 */
+	public void setBatchSize(Integer newBatchSize)
+	{
+		Integer oldBatchSize = batchSize;
+		batchSize = newBatchSize;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__BATCH_SIZE, oldBatchSize, batchSize));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Max Time MS</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Max Time MS</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Max Time MS</em>' attribute.
+	 * @see #setMaxTimeMS(Long)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_MaxTimeMS()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Long getMaxTimeMS()
+	{
+		return maxTimeMS;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxTimeMS <em>Max Time MS</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Max Time MS</em>' attribute.
+	 * @see #getMaxTimeMS()
+	 * @generated
+	 */
+	public void setMaxTimeMS(Long newMaxTimeMS)
+	{
+		Long oldMaxTimeMS = maxTimeMS;
+		maxTimeMS = newMaxTimeMS;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__MAX_TIME_MS, oldMaxTimeMS, maxTimeMS));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Max Scan</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Max Scan</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Max Scan</em>' attribute.
+	 * @see #setMaxScan(Integer)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_MaxScan()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Integer getMaxScan()
+	{
+		return maxScan;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getMaxScan <em>Max Scan</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Max Scan</em>' attribute.
+	 * @see #getMaxScan()
+	 * @generated
+	 */
+	public void setMaxScan(Integer newMaxScan)
+	{
+		Integer oldMaxScan = maxScan;
+		maxScan = newMaxScan;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__MAX_SCAN, oldMaxScan, maxScan));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>Hint</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>Hint</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>Hint</em>' attribute.
+	 * @see #setHint(DBObject)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_Hint()
+	 * @model unique="false" dataType="org.eclipselabs.mongoemf.model.DBObject"
+	 * @generated
+	 */
+	public DBObject getHint()
+	{
+		return hint;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getHint <em>Hint</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>Hint</em>' attribute.
+	 * @see #getHint()
+	 * @generated
+	 */
+	public void setHint(DBObject newHint)
+	{
+		DBObject oldHint = hint;
+		hint = newHint;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__HINT, oldHint, hint));
+	}
+
+	/**
+	 * Returns the value of the '<em><b>No Cursor Timeout</b></em>' attribute.
+	 * <!-- begin-user-doc -->
+	 * <p>
+	 * If the meaning of the '<em>No Cursor Timeout</em>' attribute isn't clear,
+	 * there really should be more of a description here...
+	 * </p>
+	 * <!-- end-user-doc -->
+	 * @return the value of the '<em>No Cursor Timeout</em>' attribute.
+	 * @see #setNoCursorTimeout(Boolean)
+	 * @see org.eclipselabs.mongoemf.model.ModelPackage#getMongoQuery_NoCursorTimeout()
+	 * @model unique="false"
+	 * @generated
+	 */
+	public Boolean getNoCursorTimeout()
+	{
+		return noCursorTimeout;
+	}
+
+	/**
+	 * Sets the value of the '{@link org.eclipselabs.mongoemf.model.MongoQuery#getNoCursorTimeout <em>No Cursor Timeout</em>}' attribute.
+	 * <!-- begin-user-doc -->
+	 * <!-- end-user-doc -->
+	 * @param value the new value of the '<em>No Cursor Timeout</em>' attribute.
+	 * @see #getNoCursorTimeout()
+	 * @generated
+	 */
+	public void setNoCursorTimeout(Boolean newNoCursorTimeout)
+	{
+		Boolean oldNoCursorTimeout = noCursorTimeout;
+		noCursorTimeout = newNoCursorTimeout;
+		if (eNotificationRequired())
+			eNotify(new ENotificationImpl(this, Notification.SET, ModelPackage.MONGO_QUERY__NO_CURSOR_TIMEOUT, oldNoCursorTimeout, noCursorTimeout));
+	}
+
 	/**
 	 * <!-- begin-user-doc -->
 	 * <!-- end-user-doc -->
@@ -350,6 +630,16 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 				return getSkip();
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				return getLimit();
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				return getBatchSize();
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				return getMaxTimeMS();
+			case ModelPackage.MONGO_QUERY__MAX_SCAN:
+				return getMaxScan();
+			case ModelPackage.MONGO_QUERY__HINT:
+				return getHint();
+			case ModelPackage.MONGO_QUERY__NO_CURSOR_TIMEOUT:
+				return getNoCursorTimeout();
 		}
 		return super.eGet(featureID, resolve, coreType);
 	}
@@ -379,6 +669,21 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				setLimit((Integer)newValue);
 				return;
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				setBatchSize((Integer)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				setMaxTimeMS((Long)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__MAX_SCAN:
+				setMaxScan((Integer)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__HINT:
+				setHint((DBObject)newValue);
+				return;
+			case ModelPackage.MONGO_QUERY__NO_CURSOR_TIMEOUT:
+				setNoCursorTimeout((Boolean)newValue);
+				return;
 		}
 		super.eSet(featureID, newValue);
 	}
@@ -408,6 +713,21 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				setLimit(LIMIT_EDEFAULT);
 				return;
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				setBatchSize(BATCH_SIZE_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				setMaxTimeMS(MAX_TIME_MS_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__MAX_SCAN:
+				setMaxScan(MAX_SCAN_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__HINT:
+				setHint(HINT_EDEFAULT);
+				return;
+			case ModelPackage.MONGO_QUERY__NO_CURSOR_TIMEOUT:
+				setNoCursorTimeout(NO_CURSOR_TIMEOUT_EDEFAULT);
+				return;
 		}
 		super.eUnset(featureID);
 	}
@@ -432,6 +752,16 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 				return SKIP_EDEFAULT == null ? skip != null : !SKIP_EDEFAULT.equals(skip);
 			case ModelPackage.MONGO_QUERY__LIMIT:
 				return LIMIT_EDEFAULT == null ? limit != null : !LIMIT_EDEFAULT.equals(limit);
+			case ModelPackage.MONGO_QUERY__BATCH_SIZE:
+				return BATCH_SIZE_EDEFAULT == null ? batchSize != null : !BATCH_SIZE_EDEFAULT.equals(batchSize);
+			case ModelPackage.MONGO_QUERY__MAX_TIME_MS:
+				return MAX_TIME_MS_EDEFAULT == null ? maxTimeMS != null : !MAX_TIME_MS_EDEFAULT.equals(maxTimeMS);
+			case ModelPackage.MONGO_QUERY__MAX_SCAN:
+				return MAX_SCAN_EDEFAULT == null ? maxScan != null : !MAX_SCAN_EDEFAULT.equals(maxScan);
+			case ModelPackage.MONGO_QUERY__HINT:
+				return HINT_EDEFAULT == null ? hint != null : !HINT_EDEFAULT.equals(hint);
+			case ModelPackage.MONGO_QUERY__NO_CURSOR_TIMEOUT:
+				return NO_CURSOR_TIMEOUT_EDEFAULT == null ? noCursorTimeout != null : !NO_CURSOR_TIMEOUT_EDEFAULT.equals(noCursorTimeout);
 		}
 		return super.eIsSet(featureID);
 	}
@@ -457,6 +787,16 @@ public class MongoQuery extends MinimalEObjectImpl.Container implements EObject
 		result.append(skip);
 		result.append(", limit: ");
 		result.append(limit);
+		result.append(", batchSize: ");
+		result.append(batchSize);
+		result.append(", maxTimeMS: ");
+		result.append(maxTimeMS);
+		result.append(", maxScan: ");
+		result.append(maxScan);
+		result.append(", hint: ");
+		result.append(hint);
+		result.append(", noCursorTimeout: ");
+		result.append(noCursorTimeout);
 		result.append(')');
 		return result.toString();
 	}
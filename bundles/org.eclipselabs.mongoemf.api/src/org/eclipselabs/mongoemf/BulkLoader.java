@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+
+/**
+ * This interface provides the API for loading many objects by id with one query per collection
+ * instead of one query per object. Each object is loaded into its own Resource of the ResourceSet
+ * exactly as if the Resource had been loaded with ResourceSet.getResource(uri, true). The proxies
+ * of a ResourceSet or of a containment tree may be resolved the same way, one level of references
+ * at a time.
+ *
+ * @author bhunt
+ */
+public interface BulkLoader
+{
+	/**
+	 * Loads the objects with the given URIs. The URIs must be of the form
+	 * mongodb://host:[port]/database/collection/id; any fragment is ignored. Resources that are
+	 * already loaded in the ResourceSet are not loaded again, and no Resource is created for an
+	 * object that does not exist.
+	 *
+	 * @param resourceSet the ResourceSet to load the objects into
+	 * @param uris the URIs of the objects to load
+	 * @param options the load options, in addition to the default load options of the ResourceSet, or null
+	 * @return the Resource of each object that was found, or was already loaded, keyed by the URI of the
+	 *         Resource in the order the URIs were given
+	 * @throws IOException if a URI is malformed, a database is not available, or a Resource could not be
+	 *           loaded
+	 */
+	Map<URI, Resource> load(ResourceSet resourceSet, Collection<URI> uris, Map<?, ?> options) throws IOException;
+
+	/**
+	 * Resolves the MongoDB proxies referenced by the objects of the ResourceSet. The proxies found
+	 * in the objects already loaded are loaded with one query per collection and resolved, then the
+	 * proxies found in the objects just loaded, and so on until there are no proxies left or depth
+	 * levels of references have been followed. Proxies to objects that do not exist are left
+	 * unresolved.
+	 *
+	 * @param resourceSet the ResourceSet whose proxies are to be resolved
+	 * @param depth the number of levels of references to follow, or -1 to follow all references
+	 * @param options the load options, in addition to the default load options of the ResourceSet, or null
+	 * @throws IOException if a database is not available, or a Resource could not be loaded
+	 */
+	void resolve(ResourceSet resourceSet, int depth, Map<?, ?> options) throws IOException;
+
+	/**
+	 * Resolves the MongoDB proxies referenced by the object and its contents as described for
+	 * resolve(ResourceSet, int, Map). The object must be in a Resource of a ResourceSet.
+	 *
+	 * @param eObject the root of the containment tree whose proxies are to be resolved
+	 * @param depth the number of levels of references to follow, or -1 to follow all references
+	 * @param options the load options, in addition to the default load options of the ResourceSet, or null
+	 * @throws IOException if a database is not available, or a Resource could not be loaded
+	 */
+	void resolve(EObject eObject, int depth, Map<?, ?> options) throws IOException;
+}
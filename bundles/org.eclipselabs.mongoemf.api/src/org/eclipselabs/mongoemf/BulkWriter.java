@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+
+/**
+ * This interface provides the API for writing a stream of EMF objects to a MongoDB collection
+ * without adding them to a Resource. The objects are taken from the iterator one batch at a time
+ * and the next batch is only taken once the previous batch has been written, so memory use is
+ * bounded by the batch size rather than by the number of objects. Each object is written to its
+ * own document as if it had been saved in a resource with multiple objects, but the objects are
+ * left as they are: they are not turned into proxies.
+ *
+ * @author bhunt
+ */
+public interface BulkWriter
+{
+	/**
+	 * The default number of objects written in one batch if Options.OPTION_BATCH_SIZE is not set.
+	 */
+	int DEFAULT_BATCH_SIZE = 1000;
+
+	/**
+	 * Writes the objects to the collection. The save options Options.OPTION_BATCH_SIZE,
+	 * Options.OPTION_ORDERED, Options.OPTION_UPSERT, Options.OPTION_WRITE_CONCERN,
+	 * Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY, Options.OPTION_SERIALIZE_DEFAULT_ATTRIBUTE_VALUES,
+	 * Options.OPTION_DIRECT_ENCODING, and XMLResource.OPTION_URI_HANDLER are supported.
+	 *
+	 * @param collectionURI the URI of the collection of the form mongodb://host:[port]/database/collection/
+	 * @param eObjects the objects to write
+	 * @param options the save options, or null
+	 * @param listener the listener to notify as each batch is written, or null
+	 * @return the number of objects written
+	 * @throws IOException if the collection could not be resolved or a batch could not be written
+	 */
+	long write(URI collectionURI, Iterator<? extends EObject> eObjects, Map<?, ?> options, Listener listener) throws IOException;
+
+	/**
+	 * Notified on the thread calling write() as each batch of objects has been written.
+	 */
+	interface Listener
+	{
+		/**
+		 * @param eObjects the objects of the batch
+		 * @param ids the ids of the documents the objects were written to, in the same order as the objects
+		 */
+		void batchWritten(List<EObject> eObjects, List<Object> ids);
+	}
+}
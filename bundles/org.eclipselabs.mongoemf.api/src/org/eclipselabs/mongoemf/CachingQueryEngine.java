@@ -0,0 +1,27 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+/**
+ * A QueryEngine that caches the queries it builds. Clients should check for this interface with
+ * instanceof, since a QueryEngine is not required to implement it.
+ * 
+ * @author bhunt
+ * 
+ */
+public interface CachingQueryEngine extends QueryEngine
+{
+	/**
+	 * @return the cache of the queries built by this engine
+	 */
+	QueryCache getQueryCache();
+}
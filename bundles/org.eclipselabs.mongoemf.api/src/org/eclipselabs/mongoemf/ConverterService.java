@@ -23,7 +23,8 @@ public interface ConverterService
 	 * Adds the converter and makes it available for consideration when serializing and de-serializing an object.
 	 * Converters are considered in the order in which they are added with the last one added being first. The
 	 * default converter is added by the constructor and will therefore be considered last. The first converter
-	 * where isConverterForType() returns true is the one used to convert the value.
+	 * where isConverterForType() returns true is the one used to convert the value. The builders may cache the
+	 * converter chosen for a data type, so converters should be added before objects using that type are saved.
 	 * 
 	 * @param converter the converter to add
 	 */
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import org.eclipse.emf.ecore.EObject;
+
+import com.mongodb.DBEncoderFactory;
+import com.mongodb.DBObject;
+
+/**
+ * A DBObjectBuilder that can encode EMF objects straight into BSON. This interface is optional:
+ * Options.OPTION_DIRECT_ENCODING is ignored when the builder does not implement it.
+ * 
+ * @author bhunt
+ * 
+ */
+public interface DirectDBObjectBuilder extends DBObjectBuilder
+{
+	/**
+	 * Build a DBObject that defers the serialization of the supplied EMF object until it is
+	 * encoded by an encoder created by getDBEncoderFactory(). Only the fields explicitly put
+	 * into the returned DBObject, such as the id and time stamp, are visible through the
+	 * DBObject API; the fields of the EMF object are written straight to the BSON output.
+	 * The returned DBObject must not be encoded by any other encoder.
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @return the DBObject wrapping the EMF object
+	 */
+	DBObject buildDeferredDBObject(EObject eObject);
+
+	/**
+	 * @return the factory of the encoders that serialize the DBObjects returned by buildDeferredDBObject()
+	 */
+	DBEncoderFactory getDBEncoderFactory();
+}
@@ -0,0 +1,38 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import org.eclipse.emf.ecore.resource.Resource;
+
+import com.mongodb.DBDecoderFactory;
+
+/**
+ * An EObjectBuilder that can build EMF objects straight from BSON. This interface is optional:
+ * Options.OPTION_DIRECT_DECODING is ignored when the builder does not implement it.
+ * 
+ * @author bhunt
+ * 
+ */
+public interface DirectEObjectBuilder extends EObjectBuilder
+{
+	/**
+	 * Creates a factory of decoders that build the EMF objects while the BSON received from
+	 * MongoDB is being decoded. The DBObjects returned by these decoders hold the EMF object
+	 * rather than its fields, and must be passed to buildEObject() with the same resource and
+	 * isProxy to get the EMF object.
+	 * 
+	 * @param resource the resource that will contain the EMF objects
+	 * @param isProxy true if the objects are to be built as proxies; false otherwise
+	 * @return the decoder factory to set on the cursor reading the objects
+	 */
+	DBDecoderFactory getDBDecoderFactory(Resource resource, boolean isProxy);
+}
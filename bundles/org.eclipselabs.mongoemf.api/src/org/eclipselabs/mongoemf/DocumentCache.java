@@ -0,0 +1,58 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * This interface provides the API for a process wide cache of the documents read from MongoDB
+ * keyed by their collection and id. The cache is used when a single object is loaded with
+ * Options.OPTION_DOCUMENT_CACHE, and entries are invalidated when their objects are saved or
+ * deleted. Implementations are registered as an OSGi service and shared by all loads, so they
+ * must be thread safe. The documents cached are shared by every Resource loaded from them and
+ * must not be modified.
+ * 
+ * @author bhunt
+ */
+public interface DocumentCache
+{
+	/**
+	 * @param collection the collection of the document
+	 * @param id the id of the document
+	 * @param maxAge the maximum time in milliseconds since the document was put in the cache, or -1 for any age
+	 * @return the cached document, or null if it is not cached or is older than maxAge
+	 */
+	DBObject get(DBCollection collection, Object id, long maxAge);
+
+	/**
+	 * Caches the document, replacing any document cached for the same id.
+	 * 
+	 * @param collection the collection of the document
+	 * @param id the id of the document
+	 * @param dbObject the document
+	 */
+	void put(DBCollection collection, Object id, DBObject dbObject);
+
+	/**
+	 * Discards the document with the given id, if it is cached.
+	 * 
+	 * @param collection the collection of the document
+	 * @param id the id of the document
+	 */
+	void invalidate(DBCollection collection, Object id);
+
+	/**
+	 * Discards all cached documents.
+	 */
+	void clear();
+}
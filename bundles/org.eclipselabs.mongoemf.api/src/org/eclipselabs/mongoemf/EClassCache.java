@@ -0,0 +1,39 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+
+/**
+ * This interface provides the API for resolving the EClass URIs stored in MongoDB objects.
+ * Implementations are registered as an OSGi service and shared by all loads, so they must be
+ * thread safe and must not return an EClass whose package is no longer registered.
+ * 
+ * @author bhunt
+ */
+public interface EClassCache
+{
+	/**
+	 * Finds the EClass for the given URI
+	 * 
+	 * @param resourceSet the resource set used to locate the EClass if it is not cached
+	 * @param eClassURI the URI of the EClass
+	 * @return the EClass instance for the given URI
+	 */
+	EClass getEClass(ResourceSet resourceSet, String eClassURI);
+
+	/**
+	 * Discards all cached EClass instances.
+	 */
+	void clear();
+}
@@ -33,5 +33,18 @@ public interface EObjectBuilderFactory
 	 * @param eClassCache the optional EClass cache to use - may be null
 	 * @return the EObject builder
 	 */
+	EObjectBuilder createObjectBuilder(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean includeAttributesForProxyReferences, EClassCache eClassCache);
+
+	/**
+	 * Constructs an EObjectBuilder that caches EClass lookups in the given map
+	 * 
+	 * @param converterService the converter service to use for converting non-native values
+	 * @param uriHandler the uri handler to use for creating relative URIs
+	 * @param includeAttributesForProxyReferences true indicate that attribute values must be included on proxy references; false otherwise
+	 * @param eClassCache the optional map of EClass URI to EClass to use as the EClass cache - may be null
+	 * @return the EObject builder
+	 * @deprecated use {@link #createObjectBuilder(ConverterService, XMLResource.URIHandler, boolean, EClassCache)}
+	 */
+	@Deprecated
 	EObjectBuilder createObjectBuilder(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean includeAttributesForProxyReferences, Map<String, EClass> eClassCache);
 }
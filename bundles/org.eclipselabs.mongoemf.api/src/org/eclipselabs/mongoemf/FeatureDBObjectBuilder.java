@@ -0,0 +1,51 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EStructuralFeature;
+
+import com.mongodb.DBObject;
+
+/**
+ * A DBObjectBuilder that can build single features of an EMF object, as needed to save only the
+ * changes tracked with Options.OPTION_TRACK_CHANGES. This interface is optional: the whole
+ * object is saved when the builder does not implement it.
+ * 
+ * @author bhunt
+ * 
+ */
+public interface FeatureDBObjectBuilder extends DBObjectBuilder
+{
+	/**
+	 * Build the value of a single feature of the supplied EMF object into the DBObject. The
+	 * value is put under the same key and in the same form as buildDBObject() would put it.
+	 * Nothing is put into the DBObject if buildDBObject() would not store the feature, such as
+	 * when the feature is transient or not set.
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @param dbObject the DBObject to put the value into
+	 * @param feature the feature to serialize
+	 */
+	void buildFeature(EObject eObject, DBObject dbObject, EStructuralFeature feature);
+
+	/**
+	 * Build a single element of a multi-valued feature of the supplied EMF object in the same
+	 * form as it is stored in the array built by buildDBObject().
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @param feature the multi-valued feature to serialize
+	 * @param index the index of the element in the feature's list
+	 * @return the value stored for the element
+	 */
+	Object buildFeatureValue(EObject eObject, EStructuralFeature feature, int index);
+}
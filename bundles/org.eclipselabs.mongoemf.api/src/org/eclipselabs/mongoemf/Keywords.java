@@ -38,5 +38,11 @@ public interface Keywords
 	 * MongoDB Timestamp field identifier. Not intended to be used by clients.
 	 */
 	public static final String TIME_STAMP_KEY = "_timeStamp";
+	/**
+	 * Query parameter placeholder identifier. A value of a query filter of the form
+	 * { "$param" : "name" } is replaced by the value of the parameter with the given name from
+	 * Options.OPTION_QUERY_PARAMETERS when the query is run.
+	 */
+	public static final String PARAMETER_KEY = "$param";
 
 }
@@ -12,10 +12,22 @@
 package org.eclipselabs.mongoemf;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipselabs.emongo.MongoDatabaseProvider;
+
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.ReadPreference;
 
 /**
  * @author bhunt
@@ -53,6 +65,138 @@ public class MongoUtils
 		}
 	}
 
+	/**
+	 * This function locates the MongoDB collection instance corresponding to the collection
+	 * identifier extracted from the URI. The URI path must have exactly 3 segments and be of the form
+	 * mongodb://host:[port]/database/collection/{id} where id is optional. The read preference of the
+	 * collection is set from Options.OPTION_READ_PREFERENCE if it is in the options.
+	 * 
+	 * @param mongoDatabaseProviders the database providers keyed by the URI of their database
+	 * @param uri the MongoDB collection identifier
+	 * @param options the load or save options as appropriate
+	 * @return the MongoDB collection corresponding to the URI
+	 * @throws IOException if the URI is malformed or the database is not available
+	 */
+	public static DBCollection getCollection(Map<String, MongoDatabaseProvider> mongoDatabaseProviders, URI uri, Map<?, ?> options) throws IOException
+	{
+		// We assume that the URI path has the form /database/collection/{id} making the
+		// collection segment # 1.
+
+		if (uri.segmentCount() != 3)
+			throw new IOException("The URI is not of the form 'mongodb:/database/collection/{id}");
+
+		MongoDatabaseProvider mongoDatabaseProvider = mongoDatabaseProviders.get(uri.trimQuery().trimSegments(2).toString());
+
+		if (mongoDatabaseProvider == null)
+			throw new IOException("Database is not available");
+
+		DB database = mongoDatabaseProvider.getDB();
+
+		if (database == null)
+			throw new IOException("Database is not available");
+
+		DBCollection dbCollection = database.getCollection(uri.segment(1));
+
+		ReadPreference readPreference = options != null ? (ReadPreference) options.get(Options.OPTION_READ_PREFERENCE) : null;
+
+		if (readPreference != null)
+			dbCollection.setReadPreference(readPreference);
+
+		return dbCollection;
+	}
+
+	/**
+	 * This function reloads a Resource if its object has been saved since the Resource was loaded or
+	 * saved. Only the time stamp of the object is read from MongoDB to decide, so refreshing a
+	 * Resource that has not changed neither transfers nor rebuilds the object. A Resource that is not
+	 * loaded, or whose time stamp is not known, is always loaded.
+	 * 
+	 * @param resource the Resource to reload
+	 * @param options the load options, or null
+	 * @return true if the Resource was loaded; false if it was already up to date
+	 * @throws IOException if the Resource could not be loaded
+	 */
+	public static boolean reloadIfModified(Resource resource, Map<?, ?> options) throws IOException
+	{
+		if (resource.isLoaded() && resource.getTimeStamp() != URIConverter.NULL_TIME_STAMP && resource.getResourceSet() != null)
+		{
+			URIConverter uriConverter = resource.getResourceSet().getURIConverter();
+			Map<String, ?> requestedAttributes = Collections.singletonMap(URIConverter.OPTION_REQUESTED_ATTRIBUTES, Collections.singleton(URIConverter.ATTRIBUTE_TIME_STAMP));
+			Object timeStamp = uriConverter.getAttributes(resource.getURI(), requestedAttributes).get(URIConverter.ATTRIBUTE_TIME_STAMP);
+
+			if (timeStamp instanceof Long && (Long) timeStamp == resource.getTimeStamp())
+				return false;
+		}
+
+		resource.unload();
+		resource.load(options);
+		return true;
+	}
+
+	/**
+	 * This function refreshes a Resource holding the result of a query. Only the objects saved since
+	 * the Resource was loaded or last refreshed are read and merged into the collection of results,
+	 * and the objects that were deleted or no longer match the query are removed from it, as
+	 * described for Options.OPTION_QUERY_MODIFIED_SINCE. The time stamp of the Resource is that of
+	 * the most recently saved object of the result. Objects saved with a time stamp earlier than
+	 * that, such as by a process whose clock is behind, are missed until they are saved again. A
+	 * Resource that is not loaded is loaded, and a Resource whose URI is not a query is reloaded
+	 * with reloadIfModified(). A loaded Resource whose URI is a query must be contained in a
+	 * ResourceSet, whose URIConverter is used to read the query.
+	 * 
+	 * @param resource the Resource whose URI is a query
+	 * @param options the load options, or null
+	 * @throws IOException if the query could not be read
+	 * @throws IllegalArgumentException if the Resource is loaded and is not contained in a ResourceSet
+	 */
+	public static void refresh(Resource resource, Map<?, ?> options) throws IOException
+	{
+		ResourceSet resourceSet = resource.getResourceSet();
+
+		if (!resource.getURI().hasQuery())
+		{
+			reloadIfModified(resource, options);
+			return;
+		}
+
+		if (!resource.isLoaded())
+		{
+			resource.load(options);
+			return;
+		}
+
+		if (resourceSet == null)
+			throw new IllegalArgumentException("The Resource is not contained in a ResourceSet");
+
+		HashMap<Object, Object> response = new HashMap<Object, Object>();
+		HashMap<Object, Object> loadOptions = new HashMap<Object, Object>(resourceSet.getLoadOptions());
+
+		if (options != null)
+			loadOptions.putAll(options);
+
+		loadOptions.put(Options.OPTION_QUERY_MODIFIED_SINCE, resource.getTimeStamp());
+		loadOptions.put(URIConverter.OPTION_RESPONSE, response);
+
+		InputStream inputStream = resourceSet.getURIConverter().createInputStream(resource.getURI(), loadOptions);
+
+		try
+		{
+			if (!(inputStream instanceof URIConverter.Loadable))
+				throw new IOException("The URI is not a MongoDB query");
+
+			((URIConverter.Loadable) inputStream).loadResource(resource);
+		}
+		finally
+		{
+			inputStream.close();
+		}
+
+		Object timeStamp = response.get(URIConverter.RESPONSE_TIME_STAMP_PROPERTY);
+
+		if (timeStamp instanceof Long)
+			resource.setTimeStamp((Long) timeStamp);
+	}
+
 	/**
 	 * This function determines whether or not the given EDataType can be represented natively by MongoDB.
 	 * 
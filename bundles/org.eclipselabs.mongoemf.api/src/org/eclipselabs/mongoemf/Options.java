@@ -68,6 +68,37 @@ public interface Options
 	 */
 	String OPTION_QUERY_CURSOR = "QUERY_CURSOR";
 
+	/**
+	 * When used with OPTION_QUERY_CURSOR, the number of objects fetched from MongoDB at a time and
+	 * kept in the ResourceSet while iterating over the cursor. The Resources of the objects of a
+	 * page are removed from the ResourceSet when the iterator moves on to the next page. If not
+	 * set, the Resource of every object returned by the cursor is kept in the ResourceSet.
+	 * 
+	 * Value type: Integer
+	 */
+	String OPTION_CURSOR_PAGE_SIZE = "CURSOR_PAGE_SIZE";
+
+	/**
+	 * If set to Boolean.TRUE, the documents returned by a query are read from MongoDB on a
+	 * background thread while the objects of the documents already read are being built, so the
+	 * next batch is fetched while the current one is being processed. Up to the batch size of the
+	 * query, or 101 documents if not set, are read ahead. This option has no effect with
+	 * OPTION_QUERY_CURSOR or OPTION_DIRECT_DECODING.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_QUERY_READ_AHEAD = "QUERY_READ_AHEAD";
+
+	/**
+	 * The document already read from MongoDB for the object being loaded. This option is set by
+	 * BulkLoader implementations when loading each Resource so that the document is not read
+	 * again. It is ignored if the id of the document does not match the id in the URI of the
+	 * Resource.
+	 * 
+	 * Value type: DBObject
+	 */
+	String OPTION_PRELOADED_DOCUMENT = "PRELOADED_DOCUMENT";
+
 	/**
 	 * This option may be used when you wish to read from a particular server in a MongoDB
 	 * replica set that has been tagged.
@@ -80,4 +111,197 @@ public interface Options
 	 * Value type: ReadPreference
 	 */
 	String OPTION_READ_PREFERENCE = "READ_PREFERENCE";
+
+	/**
+	 * If set to Boolean.TRUE, objects are encoded straight from the EMF object into the BSON sent
+	 * to MongoDB when they are saved instead of first being built as a tree of DBObjects. This
+	 * reduces the garbage created when saving large objects. The data stored is the same either
+	 * way. This option is ignored if the DBObjectBuilder is not a DirectDBObjectBuilder.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_DIRECT_ENCODING = "DIRECT_ENCODING";
+
+	/**
+	 * If set to Boolean.TRUE, objects are built straight from the BSON received from MongoDB when
+	 * they are loaded instead of first being decoded into a tree of DBObjects. This applies to
+	 * loading a single object and to the results of a query, but not to query cursors. The
+	 * objects built are the same either way. This option is ignored if the EObjectBuilder is not a
+	 * DirectEObjectBuilder.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_DIRECT_DECODING = "DIRECT_DECODING";
+
+	/**
+	 * If set to Boolean.TRUE when a single object is loaded or saved, the changes made to the
+	 * object and the objects embedded in it are tracked from then on. When the object is next
+	 * saved to the same document, only the changed fields are written using $set and $unset,
+	 * and objects appended to a multi-valued containment reference are written using $push.
+	 * The whole document is saved instead when the changes otherwise move embedded objects, such
+	 * as removing an object from a multi-valued containment reference, or change a feature map,
+	 * or when the document no longer exists, or when the DBObjectBuilder is not a
+	 * FeatureDBObjectBuilder.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_TRACK_CHANGES = "TRACK_CHANGES";
+
+	/**
+	 * The maximum number of objects written to MongoDB in one batch when saving a resource with
+	 * multiple objects. The next batch is built while the previous one is being written, so at
+	 * most two batches are held in memory. If not set, all of the objects are written in one
+	 * batch.
+	 * 
+	 * Value type: Integer
+	 */
+	String OPTION_BATCH_SIZE = "BATCH_SIZE";
+
+	/**
+	 * If set to Boolean.FALSE when saving a resource with multiple objects, the remaining objects
+	 * of a batch are still written when one of them fails. The first failure is reported once the
+	 * batch has been written. The default is Boolean.TRUE: a batch stops at the first failure.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_ORDERED = "ORDERED";
+
+	/**
+	 * If set to Boolean.TRUE when saving a resource with multiple objects, each object is upserted
+	 * by id instead of inserted, so saving the same objects again replaces them rather than failing
+	 * on duplicate ids. Objects without an id are given a new ObjectId.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_UPSERT = "UPSERT";
+
+	/**
+	 * If set to Boolean.TRUE when a single object is loaded, concurrent loads of the same object
+	 * share one read from MongoDB, and concurrent loads of different objects of the same
+	 * collection may be read with one query. Each Resource still gets its own objects. This
+	 * option is ignored with OPTION_DIRECT_DECODING.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_COALESCE_LOADS = "COALESCE_LOADS";
+
+	/**
+	 * When used with OPTION_COALESCE_LOADS, the time in milliseconds the first load waits for
+	 * loads of other objects of the same collection to read with the same query. The default is
+	 * 0: only loads that arrive while a read is being started share its query.
+	 * 
+	 * Value type: Integer
+	 */
+	String OPTION_COALESCING_WINDOW = "COALESCING_WINDOW";
+
+	/**
+	 * If set to Boolean.TRUE when a single object is loaded, the document of the object is taken
+	 * from the DocumentCache service when there is one. A cached document is validated against
+	 * the time stamp of the stored document unless it is younger than
+	 * OPTION_DOCUMENT_CACHE_MAX_AGE. Documents read from MongoDB are added to the cache, and are
+	 * discarded from it when their objects are saved or deleted. This option is ignored with
+	 * OPTION_DIRECT_DECODING.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_DOCUMENT_CACHE = "DOCUMENT_CACHE";
+
+	/**
+	 * When used with OPTION_DOCUMENT_CACHE, the time in milliseconds a cached document is used
+	 * without checking its time stamp against MongoDB. Changes saved by another process may go
+	 * unnoticed for this long. If not set, every cached document is validated.
+	 * 
+	 * Value type: Long
+	 */
+	String OPTION_DOCUMENT_CACHE_MAX_AGE = "DOCUMENT_CACHE_MAX_AGE";
+
+	/**
+	 * When a query is loaded into a Resource that already holds the result of the same query, the
+	 * objects read are merged into the existing collection. Only the objects saved at or after this
+	 * time stamp are read, and the objects deleted since are found by reading the _id of every
+	 * object in the result, so each refresh still reads one small document per object. The whole
+	 * result is read again if the query has a skip, a limit or a sort, or if the time stamp is
+	 * URIConverter.NULL_TIME_STAMP. This option is set by MongoUtils.refresh().
+	 * 
+	 * Value type: Long
+	 */
+	String OPTION_QUERY_MODIFIED_SINCE = "QUERY_MODIFIED_SINCE";
+
+	/**
+	 * The values bound to the parameters of a query keyed by parameter name. A query is a template
+	 * that is built once and cached by its query engine; each parameter placeholder of its filter
+	 * is replaced by the value bound to it when the query is run. The values are used as is, so
+	 * they keep their Java type rather than being encoded in the URI. Loading a query with an
+	 * unbound parameter fails. In the simple query syntax a parameter is written as :name, as in
+	 * name == :name && count > :min. In the native query syntax it is written as
+	 * { "$param" : "name" }.
+	 * 
+	 * Value type: Map<String, Object>
+	 */
+	String OPTION_QUERY_PARAMETERS = "QUERY_PARAMETERS";
+
+	/**
+	 * The number of objects to read into the collection when loading a page of the result of a
+	 * query. The result is sorted on the sort keys of the query followed by _id, and when the page
+	 * is full, the response holds a continuation token under RESPONSE_CONTINUATION_TOKEN for
+	 * reading the next page. Pages are read by seeking past the last object of the previous page,
+	 * so every page costs the same to read however deep it is. The limit of the query is replaced
+	 * by the page size, and its skip only applies to the first page. The option is ignored when
+	 * loading a cursor or refreshing a query.
+	 * 
+	 * Value type: Integer
+	 */
+	String OPTION_QUERY_PAGE_SIZE = "QUERY_PAGE_SIZE";
+
+	/**
+	 * The continuation token returned with the previous page of the result of a query, to read the
+	 * next page. The token is an opaque string that can be passed between processes, and is only
+	 * valid for the query and page size it was returned for. This option is only used along with
+	 * OPTION_QUERY_PAGE_SIZE.
+	 * 
+	 * Value type: String
+	 */
+	String OPTION_CONTINUATION_TOKEN = "CONTINUATION_TOKEN";
+
+	/**
+	 * The key of the continuation token in the response of a load with OPTION_QUERY_PAGE_SIZE. The
+	 * response holds no token after the last page.
+	 * 
+	 * Value type: String
+	 */
+	String RESPONSE_CONTINUATION_TOKEN = "CONTINUATION_TOKEN";
+
+	/**
+	 * When loading a query, count the objects of the result instead of reading them. The count is
+	 * put in the response under RESPONSE_COUNT, and the Resource is left empty. The skip and limit
+	 * of the query are applied to the count.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_QUERY_COUNT = "QUERY_COUNT";
+
+	/**
+	 * When loading a query, only test whether the result holds any object, reading at most the id
+	 * of one document. The outcome is put in the response under RESPONSE_EXISTS, and the Resource
+	 * is left empty. This option may be combined with OPTION_QUERY_COUNT.
+	 * 
+	 * Value type: Boolean
+	 */
+	String OPTION_QUERY_EXISTS = "QUERY_EXISTS";
+
+	/**
+	 * The key of the number of objects in the result of a query in the response of a load with
+	 * OPTION_QUERY_COUNT.
+	 * 
+	 * Value type: Long
+	 */
+	String RESPONSE_COUNT = "COUNT";
+
+	/**
+	 * The key of whether the result of a query holds any object in the response of a load with
+	 * OPTION_QUERY_EXISTS.
+	 * 
+	 * Value type: Boolean
+	 */
+	String RESPONSE_EXISTS = "EXISTS";
 }
@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.common.notify.impl.AdapterImpl;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+
+/**
+ * This adapter reads ahead when the proxies of a many-valued reference are resolved one at a
+ * time, as they are when the list is iterated. When a proxy of the list is resolved, the
+ * proxies following it are loaded with the BulkLoader so that resolving them does not go back
+ * to the database. The number of proxies loaded starts at the minimum window size and doubles,
+ * up to the maximum window size, each time the proxies loaded so far have been resolved in
+ * order. Resolving a proxy out of order starts again at the minimum window size.
+ *
+ * The adapter is attached to the root of each Resource loaded ahead, so it follows the
+ * traversal down a containment tree. Errors reading ahead are ignored: the proxy is then
+ * resolved as if there were no adapter.
+ *
+ * @author bhunt
+ */
+public class PrefetchAdapter extends AdapterImpl
+{
+	/**
+	 * The default number of proxies loaded when a list is first resolved.
+	 */
+	public static final int DEFAULT_MINIMUM_WINDOW_SIZE = 10;
+
+	/**
+	 * The default limit on the number of proxies loaded at once.
+	 */
+	public static final int DEFAULT_MAXIMUM_WINDOW_SIZE = 1000;
+
+	/**
+	 * @param bulkLoader the loader used to read ahead
+	 * @param options the load options, or null
+	 */
+	public PrefetchAdapter(BulkLoader bulkLoader, Map<?, ?> options)
+	{
+		this(bulkLoader, DEFAULT_MINIMUM_WINDOW_SIZE, DEFAULT_MAXIMUM_WINDOW_SIZE, options);
+	}
+
+	/**
+	 * @param bulkLoader the loader used to read ahead
+	 * @param minimumWindowSize the number of proxies loaded when a list is first resolved
+	 * @param maximumWindowSize the limit on the number of proxies loaded at once
+	 * @param options the load options, or null
+	 */
+	public PrefetchAdapter(BulkLoader bulkLoader, int minimumWindowSize, int maximumWindowSize, Map<?, ?> options)
+	{
+		this.bulkLoader = bulkLoader;
+		this.minimumWindowSize = Math.max(minimumWindowSize, 1);
+		this.maximumWindowSize = Math.max(maximumWindowSize, this.minimumWindowSize);
+		this.options = options;
+	}
+
+	@Override
+	public void notifyChanged(Notification notification)
+	{
+		if (notification.getEventType() != Notification.RESOLVE || !(notification.getFeature() instanceof EReference))
+			return;
+
+		EReference reference = (EReference) notification.getFeature();
+
+		if (!reference.isMany())
+			return;
+
+		Window window = windows.get(reference);
+
+		if (window == null)
+		{
+			window = new Window();
+			windows.put(reference, window);
+		}
+
+		int index = notification.getPosition();
+
+		if (index != window.lastIndex + 1)
+		{
+			window.size = minimumWindowSize;
+			window.end = index + 1;
+		}
+
+		window.lastIndex = index;
+
+		if (index + 1 < window.end)
+			return;
+
+		EObject owner = (EObject) notification.getNotifier();
+		InternalEList<?> values = (InternalEList<?>) owner.eGet(reference, false);
+		int start = Math.max(index + 1, window.end);
+		int end = Math.min(start + window.size, values.size());
+
+		window.end = end;
+		window.size = Math.min(window.size * 2, maximumWindowSize);
+
+		if (start < end)
+			prefetch(owner, values, start, end);
+	}
+
+	@Override
+	public boolean isAdapterForType(Object type)
+	{
+		return type == PrefetchAdapter.class;
+	}
+
+	/**
+	 * Loads the Resources of the proxies in the given range of the list.
+	 *
+	 * @param owner the object holding the list
+	 * @param values the values of the reference
+	 * @param start the index of the first value to load
+	 * @param end the index following the last value to load
+	 */
+	private void prefetch(EObject owner, InternalEList<?> values, int start, int end)
+	{
+		Resource resource = owner.eResource();
+		ResourceSet resourceSet = resource != null ? resource.getResourceSet() : null;
+
+		if (resourceSet == null)
+			return;
+
+		ArrayList<URI> uris = new ArrayList<URI>(end - start);
+
+		for (int i = start; i < end; i++)
+		{
+			InternalEObject value = (InternalEObject) values.basicGet(i);
+
+			if (value != null && value.eIsProxy())
+				uris.add(value.eProxyURI().trimFragment());
+		}
+
+		if (uris.isEmpty())
+			return;
+
+		try
+		{
+			for (Resource loadedResource : bulkLoader.load(resourceSet, uris, options).values())
+			{
+				for (EObject eObject : loadedResource.getContents())
+				{
+					if (EcoreUtil.getExistingAdapter(eObject, PrefetchAdapter.class) == null)
+						eObject.eAdapters().add(new PrefetchAdapter(bulkLoader, minimumWindowSize, maximumWindowSize, options));
+				}
+			}
+		}
+		catch (IOException e)
+		{
+			// The proxies will be resolved one at a time
+		}
+	}
+
+	/**
+	 * The read ahead state of one reference.
+	 */
+	private static final class Window
+	{
+		int lastIndex = -2;
+		int end;
+		int size;
+	}
+
+	private final BulkLoader bulkLoader;
+	private final int minimumWindowSize;
+	private final int maximumWindowSize;
+	private final Map<?, ?> options;
+	private final HashMap<EReference, Window> windows = new HashMap<EReference, Window>();
+}
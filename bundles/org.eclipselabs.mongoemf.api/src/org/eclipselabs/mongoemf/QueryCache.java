@@ -0,0 +1,199 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipselabs.mongoemf.model.MongoQuery;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+/**
+ * A cache of the queries built by a QueryEngine keyed by the query string, so that each distinct
+ * query is only parsed once. The cache holds its own copy of each query, and returns a new copy
+ * each time, so a caller may modify the query returned without affecting the cache. When the
+ * cache is full, an arbitrary query is discarded to make room for the next one. The number of
+ * lookups that found a query and that did not are counted.
+ *
+ * This class is thread safe and does not lock on lookups.
+ *
+ * @author bhunt
+ */
+public class QueryCache
+{
+	/**
+	 * The default maximum number of queries cached.
+	 */
+	public static final int DEFAULT_MAXIMUM_SIZE = 1000;
+
+	public QueryCache()
+	{
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of queries cached
+	 */
+	public QueryCache(int maximumSize)
+	{
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * @param query the query string
+	 * @return a copy of the cached query, or null if the query is not cached
+	 */
+	public MongoQuery get(String query)
+	{
+		MongoQuery mongoQuery = queries.get(query);
+
+		if (mongoQuery == null)
+		{
+			misses.incrementAndGet();
+			return null;
+		}
+
+		hits.incrementAndGet();
+		return copy(mongoQuery);
+	}
+
+	/**
+	 * Caches a copy of the query.
+	 *
+	 * @param query the query string
+	 * @param mongoQuery the query built from the query string
+	 */
+	public void put(String query, MongoQuery mongoQuery)
+	{
+		if (maximumSize <= 0)
+			return;
+
+		Iterator<String> keys = queries.keySet().iterator();
+
+		while (queries.size() >= maximumSize && keys.hasNext())
+		{
+			keys.next();
+			keys.remove();
+		}
+
+		queries.put(query, copy(mongoQuery));
+	}
+
+	/**
+	 * Discards all cached queries. The counts are not reset.
+	 */
+	public void clear()
+	{
+		queries.clear();
+	}
+
+	/**
+	 * @return the number of queries cached
+	 */
+	public int size()
+	{
+		return queries.size();
+	}
+
+	/**
+	 * @return the number of lookups that found the query
+	 */
+	public long getHitCount()
+	{
+		return hits.get();
+	}
+
+	/**
+	 * @return the number of lookups that did not find the query
+	 */
+	public long getMissCount()
+	{
+		return misses.get();
+	}
+
+	/**
+	 * @param mongoQuery the query to copy
+	 * @return a copy of the query that shares no mutable values with it
+	 */
+	private static MongoQuery copy(MongoQuery mongoQuery)
+	{
+		MongoQuery copy = EcoreUtil.copy(mongoQuery);
+
+		for (EAttribute attribute : copy.eClass().getEAllAttributes())
+		{
+			Object value = copy.eGet(attribute);
+
+			if (value instanceof DBObject)
+				copy.eSet(attribute, copyValue(value));
+		}
+
+		return copy;
+	}
+
+	/**
+	 * @param value a value of a DBObject
+	 * @return a deep copy of the value if it is mutable; the value otherwise
+	 */
+	private static Object copyValue(Object value)
+	{
+		if (value instanceof BasicDBList)
+		{
+			BasicDBList copy = new BasicDBList();
+
+			for (Object element : (BasicDBList) value)
+				copy.add(copyValue(element));
+
+			return copy;
+		}
+
+		if (value instanceof DBObject)
+		{
+			DBObject dbObject = (DBObject) value;
+			BasicDBObject copy = new BasicDBObject();
+
+			for (String key : dbObject.keySet())
+				copy.put(key, copyValue(dbObject.get(key)));
+
+			return copy;
+		}
+
+		if (value instanceof List<?>)
+		{
+			List<?> list = (List<?>) value;
+			ArrayList<Object> copy = new ArrayList<Object>(list.size());
+
+			for (Object element : list)
+				copy.add(copyValue(element));
+
+			return copy;
+		}
+
+		if (value instanceof Date)
+			return new Date(((Date) value).getTime());
+
+		return value;
+	}
+
+	private final int maximumSize;
+	private final ConcurrentHashMap<String, MongoQuery> queries = new ConcurrentHashMap<String, MongoQuery>();
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+}
@@ -11,6 +11,7 @@
 
 package org.eclipselabs.mongoemf.util;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 
 import org.eclipse.emf.common.util.URI;
@@ -23,6 +24,12 @@ import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 
 /**
+ * Builds an EMF object in its own Resource for each document returned by the cursor. If a page
+ * size is given, the Resources of the objects of a page are removed from the ResourceSet when
+ * the first object of the next page is returned, so iterating over a large result keeps at
+ * most one page of objects in the ResourceSet. The objects of a released page must not be used
+ * to resolve proxies.
+ * 
  * @author bhunt
  * 
  */
@@ -32,6 +39,8 @@ public class MongoIterator implements Iterator<EObject>
 	private DBCollection dbCollection;
 	private Resource eResource;
 	private EObjectBuilder objectBuilder;
+	private Integer pageSize;
+	private ArrayList<Resource> page;
 
 	/**
 	 * @param dbCursor
@@ -40,12 +49,30 @@ public class MongoIterator implements Iterator<EObject>
 	 * @param objectBuilder
 	 */
 	public MongoIterator(DBCursor dbCursor, DBCollection dbCollection, Resource eResource, EObjectBuilder objectBuilder)
+	{
+		this(dbCursor, dbCollection, eResource, objectBuilder, null);
+	}
+
+	/**
+	 * @param dbCursor
+	 * @param dbCollection
+	 * @param eResource
+	 * @param objectBuilder
+	 * @param pageSize the number of objects kept in the ResourceSet, or null to keep all of the objects
+	 */
+	public MongoIterator(DBCursor dbCursor, DBCollection dbCollection, Resource eResource, EObjectBuilder objectBuilder, Integer pageSize)
 	{
 		super();
 		this.dbCursor = dbCursor;
 		this.dbCollection = dbCollection;
 		this.eResource = eResource;
 		this.objectBuilder = objectBuilder;
+
+		if (pageSize != null && pageSize > 0)
+		{
+			this.pageSize = pageSize;
+			this.page = new ArrayList<Resource>(pageSize);
+		}
 	}
 
 	@Override
@@ -58,10 +85,21 @@ public class MongoIterator implements Iterator<EObject>
 	public EObject next()
 	{
 		DBObject dbObject = dbCursor.next();
+
+		if (page != null && page.size() == pageSize)
+		{
+			eResource.getResourceSet().getResources().removeAll(page);
+			page.clear();
+		}
+
 		URI uri = objectBuilder.buildURI(dbCollection, dbObject);
 		Resource resource = eResource.getResourceSet().createResource(uri, null);
 		EObject eObject = objectBuilder.buildEObject(dbCollection, dbObject, eResource, false);
 		resource.getContents().add(eObject);
+
+		if (page != null)
+			page.add(resource);
+
 		return eObject;
 	}
 
@@ -18,7 +18,6 @@ import java.util.List;
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.EAttribute;
-import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EDataType;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
@@ -31,11 +30,13 @@ import org.eclipse.emf.ecore.util.FeatureMapUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipselabs.mongoemf.ConverterService;
-import org.eclipselabs.mongoemf.DBObjectBuilder;
+import org.eclipselabs.mongoemf.DirectDBObjectBuilder;
+import org.eclipselabs.mongoemf.FeatureDBObjectBuilder;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
 
 import com.mongodb.BasicDBObject;
+import com.mongodb.DBEncoderFactory;
 import com.mongodb.DBObject;
 
 /**
@@ -46,7 +47,7 @@ import com.mongodb.DBObject;
  * 
  * @author bhunt
  */
-public class DBObjectBuilderImpl implements DBObjectBuilder
+public class DBObjectBuilderImpl implements DirectDBObjectBuilder, FeatureDBObjectBuilder
 {
 	/**
 	 * @param converterService the service to use when converting attribute values
@@ -55,14 +56,47 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 	 *          false causes default attribute values to be skipped
 	 */
 	public DBObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean serializeDefaultAttributeValues)
+	{
+		this(converterService, uriHandler, serializeDefaultAttributeValues, new PlanCache(converterService));
+	}
+
+	/**
+	 * @param converterService the service to use when converting attribute values
+	 * @param uriHandler the handler for creating proxy URIs
+	 * @param serializeDefaultAttributeValues true causes default attribute values to be written to the DBObject;
+	 *          false causes default attribute values to be skipped
+	 * @param planCache the cache of serialization plans shared by the builders using the converter service
+	 */
+	DBObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean serializeDefaultAttributeValues, PlanCache planCache)
 	{
 		this.converterService = converterService;
 		this.uriHandler = uriHandler;
 		this.serializeDefaultAttributeValues = serializeDefaultAttributeValues;
+		this.planCache = planCache;
+
+		// The attributes are serialized from the write plans unless a subclass customizes the
+		// serialization of attributes, in which case they are serialized through its functions.
+		// The direct encoder serializes the whole object itself, so it is only used if none of the
+		// functions it stands in for is customized.
+
+		Class<?> type = getClass();
+		callAttributeHooks = isOverridden(type, DBObjectBuilderImpl.class, "buildAttribute", EObject.class, DBObject.class, EAttribute.class)
+				|| isOverridden(type, DBObjectBuilderImpl.class, "buildAttributeArray", DBObject.class, EAttribute.class, Object.class)
+				|| isOverridden(type, DBObjectBuilderImpl.class, "buildAttributeValue", DBObject.class, EAttribute.class, Object.class)
+				|| isOverridden(type, DBObjectBuilderImpl.class, "convertEMFValueToMongoDBValue", EDataType.class, Object.class);
+		encodeDirectly = !callAttributeHooks
+				&& !isOverridden(type, DBObjectBuilderImpl.class, "buildDBObject", EObject.class)
+				&& !isOverridden(type, DBObjectBuilderImpl.class, "buildExtrensicID", EObject.class, DBObject.class)
+				&& !isOverridden(type, DBObjectBuilderImpl.class, "buildReference", EObject.class, DBObject.class, EReference.class)
+				&& !isOverridden(type, DBObjectBuilderImpl.class, "buildReferencedObject", EReference.class, EObject.class);
 	}
 
 	/**
-	 * Build a DBObject from the supplied EMF object.
+	 * Build a DBObject from the supplied EMF object. The features to serialize are taken
+	 * from the cached write plan of the object's EClass, and the attributes are serialized
+	 * using the key and converter recorded in the plan. If a subclass overrides buildAttribute(),
+	 * buildAttributeArray(), buildAttributeValue(), or convertEMFValueToMongoDBValue(), the
+	 * attributes are serialized through buildAttribute() instead.
 	 * 
 	 * @param eObject the EMF object to serialize
 	 * @return the newly created DBObject
@@ -73,12 +107,12 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 		// Build a MongoDB object from the EMF object.
 
 		BasicDBObject dbObject = new BasicDBObject();
-		EClass eClass = eObject.eClass();
+		WritePlan plan = planCache.getWritePlan(eObject.eClass());
 
 		// We have to add the URI of the class to the object so that we can
 		// reconstruct the EMF object when we read it back out of MongoDB.
 
-		dbObject.put(Keywords.ECLASS_KEY, EcoreUtil.getURI(eClass).toString());
+		dbObject.put(Keywords.ECLASS_KEY, plan.eClassURI);
 
 		// Save the XML extrinsic id if necessary
 
@@ -86,23 +120,113 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 
 		// All attributes are mapped as key / value pairs with the key being the attribute name.
 
-		for (EAttribute attribute : eClass.getEAllAttributes())
+		for (WritePlan.AttributeEntry entry : plan.attributes)
 		{
-			if (!attribute.isTransient() && (eObject.eIsSet(attribute) || (!attribute.isUnsettable() && serializeDefaultAttributeValues)))
-				buildAttribute(eObject, dbObject, attribute);
+			if (eObject.eIsSet(entry.attribute) || (!entry.isUnsettable && serializeDefaultAttributeValues))
+				buildAttribute(eObject, dbObject, entry);
 		}
 
 		// All references are mapped as key / value pairs with the key being the reference name.
 
-		for (EReference reference : eClass.getEAllReferences())
+		for (EReference reference : plan.references)
 		{
-			if (!reference.isTransient() && eObject.eIsSet(reference))
+			if (eObject.eIsSet(reference))
 				buildReference(eObject, dbObject, reference);
 		}
 
 		return dbObject;
 	}
 
+	/**
+	 * Build the value of a single feature of the supplied EMF object as buildDBObject() would.
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @param dbObject the DBObject to put the value into
+	 * @param feature the feature to serialize
+	 */
+	@Override
+	public void buildFeature(EObject eObject, DBObject dbObject, EStructuralFeature feature)
+	{
+		if (feature.isTransient())
+			return;
+
+		if (feature instanceof EReference)
+		{
+			if (eObject.eIsSet(feature))
+				buildReference(eObject, dbObject, (EReference) feature);
+
+			return;
+		}
+
+		for (WritePlan.AttributeEntry entry : planCache.getWritePlan(eObject.eClass()).attributes)
+		{
+			if (entry.attribute == feature)
+			{
+				if (eObject.eIsSet(entry.attribute) || (!entry.isUnsettable && serializeDefaultAttributeValues))
+					buildAttribute(eObject, dbObject, entry);
+
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Build a single element of a multi-valued feature as buildDBObject() would put it in the array
+	 * of the feature. Feature maps are not supported.
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @param feature the multi-valued feature to serialize
+	 * @param index the index of the element in the feature's list
+	 * @return the value stored for the element
+	 */
+	@Override
+	public Object buildFeatureValue(EObject eObject, EStructuralFeature feature, int index)
+	{
+		if (feature instanceof EReference)
+		{
+			@SuppressWarnings("unchecked")
+			InternalEList<EObject> targetObjects = (InternalEList<EObject>) eObject.eGet(feature, false);
+			return buildReferencedObject((EReference) feature, targetObjects.basicGet(index));
+		}
+
+		for (WritePlan.AttributeEntry entry : planCache.getWritePlan(eObject.eClass()).attributes)
+		{
+			if (entry.attribute == feature && !entry.isFeatureMap)
+			{
+				if (!callAttributeHooks)
+					return entry.convert(((EList<?>) eObject.eGet(feature)).get(index));
+
+				DBObject dbObject = new BasicDBObject();
+				buildAttribute(eObject, dbObject, entry.attribute);
+				return ((List<?>) dbObject.get(feature.getName())).get(index);
+			}
+		}
+
+		throw new IllegalArgumentException("The feature '" + feature.getName() + "' is not a stored multi-valued feature");
+	}
+
+	/**
+	 * Wraps the EMF object in a DBObject that is serialized straight into the BSON output
+	 * by the encoders from getDBEncoderFactory(), using the same write plans and layout as
+	 * buildDBObject(). If a subclass overrides buildDBObject(), buildExtrensicID(), buildReference(),
+	 * buildReferencedObject(), or a function used to serialize attributes, the object is built by
+	 * buildDBObject() instead.
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @return the DBObject wrapping the EMF object
+	 */
+	@Override
+	public DBObject buildDeferredDBObject(EObject eObject)
+	{
+		return encodeDirectly ? new DeferredDBObject(this, eObject) : buildDBObject(eObject);
+	}
+
+	@Override
+	public DBEncoderFactory getDBEncoderFactory()
+	{
+		return DirectDBEncoder.FACTORY;
+	}
+
 	/**
 	 * Serializes the attribute from the EMF object into the DBObject
 	 * Feature maps are delegated to buildFeatureMap() and non-native arrays to
@@ -283,7 +407,7 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 		{
 			BasicDBObject dbObject = new BasicDBObject(2);
 			dbObject.put(Keywords.PROXY_KEY, uriHandler.deresolve(eProxyURI).toString());
-			dbObject.put(Keywords.ECLASS_KEY, EcoreUtil.getURI(targetObject.eClass()).toString());
+			dbObject.put(Keywords.ECLASS_KEY, planCache.getWritePlan(targetObject.eClass()).eClassURI);
 			return dbObject;
 		}
 		else if (!eReference.isContainment() || (eReference.isResolveProxies() && internalEObject.eDirectResource() != null))
@@ -292,7 +416,7 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 
 			BasicDBObject dbObject = new BasicDBObject(2);
 			dbObject.put(Keywords.PROXY_KEY, uriHandler.deresolve(EcoreUtil.getURI(targetObject)).toString());
-			dbObject.put(Keywords.ECLASS_KEY, EcoreUtil.getURI(targetObject.eClass()).toString());
+			dbObject.put(Keywords.ECLASS_KEY, planCache.getWritePlan(targetObject.eClass()).eClassURI);
 			return dbObject;
 		}
 		else
@@ -303,6 +427,39 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 		}
 	}
 
+	/**
+	 * Serializes the attribute described by the plan entry from the EMF object into the DBObject.
+	 * 
+	 * @param eObject the EMF object to serialize
+	 * @param dbObject the MongoDB object being built
+	 * @param entry the plan entry of the attribute to serialize
+	 */
+	private void buildAttribute(EObject eObject, DBObject dbObject, WritePlan.AttributeEntry entry)
+	{
+		if (callAttributeHooks)
+		{
+			buildAttribute(eObject, dbObject, entry.attribute);
+			return;
+		}
+
+		Object value = eObject.eGet(entry.attribute);
+
+		if (entry.isFeatureMap)
+			buildFeatureMap(dbObject, entry.attribute, value);
+		else if (entry.isMany && entry.converter != null)
+		{
+			EList<?> eValues = (EList<?>) value;
+			ArrayList<Object> convertedValues = new ArrayList<Object>(eValues.size());
+
+			for (Object rawValue : eValues)
+				convertedValues.add(entry.convert(rawValue));
+
+			dbObject.put(entry.key, convertedValues);
+		}
+		else
+			dbObject.put(entry.key, entry.convert(value));
+	}
+
 	/**
 	 * Converts the EMF value into a MongoDB value using the converter service
 	 * 
@@ -315,7 +472,49 @@ public class DBObjectBuilderImpl implements DBObjectBuilder
 		return converterService.getConverter(eDataType).convertEMFValueToMongoDBValue(eDataType, emfValue);
 	}
 
+	/**
+	 * @param type the class of a builder
+	 * @param base the builder class declaring the function
+	 * @param name the name of the function
+	 * @param parameterTypes the parameter types of the function
+	 * @return true if the function is overridden by a class between type and base; false otherwise
+	 */
+	static boolean isOverridden(Class<?> type, Class<?> base, String name, Class<?>... parameterTypes)
+	{
+		for (Class<?> subclass = type; subclass != base && subclass != null; subclass = subclass.getSuperclass())
+		{
+			try
+			{
+				subclass.getDeclaredMethod(name, parameterTypes);
+				return true;
+			}
+			catch (NoSuchMethodException e)
+			{}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @return the cache of serialization plans used by this builder
+	 */
+	PlanCache getPlanCache()
+	{
+		return planCache;
+	}
+
+	/**
+	 * @return true if default attribute values are written to the DBObject; false otherwise
+	 */
+	boolean isSerializeDefaultAttributeValues()
+	{
+		return serializeDefaultAttributeValues;
+	}
+
 	private ConverterService converterService;
 	private XMLResource.URIHandler uriHandler;
 	private boolean serializeDefaultAttributeValues;
+	private PlanCache planCache;
+	private boolean callAttributeHooks;
+	private boolean encodeDirectly;
 }
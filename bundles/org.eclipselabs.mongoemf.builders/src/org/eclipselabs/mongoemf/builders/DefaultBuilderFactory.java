@@ -12,16 +12,22 @@
 package org.eclipselabs.mongoemf.builders;
 
 import java.util.Map;
+import java.util.WeakHashMap;
 
 import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.xmi.XMLResource.URIHandler;
 import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.DBObjectBuilder;
 import org.eclipselabs.mongoemf.DBObjectBuilderFactory;
+import org.eclipselabs.mongoemf.EClassCache;
 import org.eclipselabs.mongoemf.EObjectBuilder;
 import org.eclipselabs.mongoemf.EObjectBuilderFactory;
 
 /**
+ * The builders created by this factory share the per EClass plans built for a converter
+ * service, so the work of analyzing an EClass is done once rather than for every resource
+ * that is saved or loaded.
+ * 
  * @author bhunt
  * 
  */
@@ -30,12 +36,41 @@ public class DefaultBuilderFactory implements EObjectBuilderFactory, DBObjectBui
 	@Override
 	public DBObjectBuilder createBuilder(ConverterService converterService, URIHandler uriHandler, boolean serializeDefaultAttributeValues)
 	{
-		return new DBObjectBuilderImpl(converterService, uriHandler, serializeDefaultAttributeValues);
+		return new DBObjectBuilderImpl(converterService, uriHandler, serializeDefaultAttributeValues, getPlanCache(converterService));
+	}
+
+	@Override
+	public EObjectBuilder createObjectBuilder(ConverterService converterService, URIHandler uriHandler, boolean includeAttributesForProxyReferences, EClassCache eClassCache)
+	{
+		return new EObjectBuilderImpl(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache, getPlanCache(converterService));
 	}
 
 	@Override
+	@Deprecated
 	public EObjectBuilder createObjectBuilder(ConverterService converterService, URIHandler uriHandler, boolean includeAttributesForProxyReferences, Map<String, EClass> eClassCache)
 	{
-		return new EObjectBuilderImpl(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache);
+		return createObjectBuilder(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache != null ? new MapEClassCache(eClassCache) : null);
 	}
+
+	/**
+	 * @param converterService the converter service the builder will use
+	 * @return the plan cache shared by all builders using the converter service
+	 */
+	private PlanCache getPlanCache(ConverterService converterService)
+	{
+		synchronized (planCaches)
+		{
+			PlanCache planCache = planCaches.get(converterService);
+
+			if (planCache == null)
+			{
+				planCache = new PlanCache(converterService);
+				planCaches.put(converterService, planCache);
+			}
+
+			return planCache;
+		}
+	}
+
+	private Map<ConverterService, PlanCache> planCaches = new WeakHashMap<ConverterService, PlanCache>();
 }
@@ -0,0 +1,77 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipselabs.mongoemf.EClassCache;
+
+/**
+ * A process wide cache of EClass URI to EClass. Only classes from packages in the global
+ * package registry are cached. A cached class is checked against the registry each time it
+ * is returned, so registering a different package under the same namespace URI, or
+ * unregistering the package, invalidates the cached entry. A resource set whose own package
+ * registry overrides the namespace URI bypasses the cache.
+ * 
+ * This class is thread safe and does not lock on lookups.
+ * 
+ * @author bhunt
+ */
+public class DefaultEClassCache implements EClassCache
+{
+	@Override
+	public EClass getEClass(ResourceSet resourceSet, String eClassURI)
+	{
+		EClass eClass = eClasses.get(eClassURI);
+
+		if (eClass != null)
+		{
+			EPackage ePackage = eClass.getEPackage();
+
+			if (EPackage.Registry.INSTANCE.getEPackage(ePackage.getNsURI()) != ePackage)
+				eClasses.remove(eClassURI, eClass);
+			else if (!isOverridden(resourceSet, ePackage))
+				return eClass;
+		}
+
+		eClass = (EClass) resourceSet.getEObject(URI.createURI(eClassURI), true);
+
+		if (eClass != null && PlanCache.isRegistered(eClass) && !isOverridden(resourceSet, eClass.getEPackage()))
+			eClasses.put(eClassURI, eClass);
+
+		return eClass;
+	}
+
+	@Override
+	public void clear()
+	{
+		eClasses.clear();
+	}
+
+	/**
+	 * @param resourceSet the resource set being loaded into
+	 * @param ePackage the registered package
+	 * @return true if the package registry local to the resource set maps the namespace URI of the package to a different package; false otherwise
+	 */
+	private boolean isOverridden(ResourceSet resourceSet, EPackage ePackage)
+	{
+		Object localPackage = resourceSet.getPackageRegistry().get(ePackage.getNsURI());
+		return localPackage != null && localPackage != ePackage;
+	}
+
+	private final ConcurrentMap<String, EClass> eClasses = new ConcurrentHashMap<String, EClass>();
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.bson.BSONObject;
+import org.eclipse.emf.ecore.EObject;
+
+import com.mongodb.DBObject;
+
+/**
+ * A DBObject standing in for an EMF object that is serialized by DirectDBEncoder when the
+ * DBObject is encoded. The fields put into this DBObject, such as the id and time stamp, are
+ * kept in a small map and written along with the fields of the EMF object. The id is written
+ * first as MongoDB expects.
+ *
+ * @author bhunt
+ */
+final class DeferredDBObject implements DBObject
+{
+	/**
+	 * @param builder the builder whose settings are used to serialize the EMF object
+	 * @param eObject the EMF object to serialize
+	 */
+	DeferredDBObject(DBObjectBuilderImpl builder, EObject eObject)
+	{
+		this.builder = builder;
+		this.eObject = eObject;
+	}
+
+	@Override
+	public Object put(String key, Object v)
+	{
+		return fields.put(key, v);
+	}
+
+	@Override
+	public void putAll(BSONObject o)
+	{
+		for (String key : o.keySet())
+			fields.put(key, o.get(key));
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	@Override
+	public void putAll(Map m)
+	{
+		fields.putAll(m);
+	}
+
+	@Override
+	public Object get(String key)
+	{
+		return fields.get(key);
+	}
+
+	/**
+	 * Builds the complete DBObject, including the fields of the EMF object.
+	 */
+	@SuppressWarnings("rawtypes")
+	@Override
+	public Map toMap()
+	{
+		DBObject dbObject = builder.buildDBObject(eObject);
+		dbObject.putAll(fields);
+		return dbObject.toMap();
+	}
+
+	@Override
+	public Object removeField(String key)
+	{
+		return fields.remove(key);
+	}
+
+	@Override
+	@Deprecated
+	public boolean containsKey(String s)
+	{
+		return containsField(s);
+	}
+
+	@Override
+	public boolean containsField(String s)
+	{
+		return fields.containsKey(s);
+	}
+
+	@Override
+	public Set<String> keySet()
+	{
+		return fields.keySet();
+	}
+
+	@Override
+	public void markAsPartialObject()
+	{
+		throw new UnsupportedOperationException("A deferred DBObject cannot be a partial object");
+	}
+
+	@Override
+	public boolean isPartialObject()
+	{
+		return false;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "DeferredDBObject " + fields + " for " + eObject.eClass().getName();
+	}
+
+	final DBObjectBuilderImpl builder;
+	final EObject eObject;
+	final LinkedHashMap<String, Object> fields = new LinkedHashMap<String, Object>();
+}
@@ -0,0 +1,234 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.bson.BSON;
+import org.bson.BSONObject;
+import org.bson.io.OutputBuffer;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBEncoder;
+import com.mongodb.DBEncoderFactory;
+import com.mongodb.DefaultDBEncoder;
+
+/**
+ * An encoder that writes a DeferredDBObject straight from its EMF object into the BSON output
+ * buffer. The layout written is the same as that of the DBObject built by DBObjectBuilderImpl,
+ * but embedded objects and arrays of converted values are written without first being built as
+ * DBObjects and lists. Any other DBObject is encoded as DefaultDBEncoder would.
+ *
+ * This class is not thread safe. Use FACTORY to create an encoder for each operation.
+ *
+ * @author bhunt
+ */
+final class DirectDBEncoder extends DefaultDBEncoder
+{
+	static final DBEncoderFactory FACTORY = new DBEncoderFactory()
+	{
+		@Override
+		public DBEncoder create()
+		{
+			return new DirectDBEncoder();
+		}
+	};
+
+	@Override
+	public int writeObject(OutputBuffer buf, BSONObject o)
+	{
+		if (!(o instanceof DeferredDBObject))
+			return super.writeObject(buf, o);
+
+		set(buf);
+
+		try
+		{
+			return putDeferredObject((DeferredDBObject) o);
+		}
+		finally
+		{
+			done();
+		}
+	}
+
+	/**
+	 * Writes the top level document for the deferred object.
+	 *
+	 * @param dbObject the deferred object
+	 * @return the number of bytes written
+	 */
+	private int putDeferredObject(DeferredDBObject dbObject)
+	{
+		int start = _buf.getPosition();
+		_buf.writeInt(0);
+
+		// The id must be the first field in the document.
+
+		Object id = dbObject.fields.get(Keywords.ID_KEY);
+
+		if (id != null)
+			_putObjectField(Keywords.ID_KEY, id);
+
+		putEObjectFields(dbObject.builder, dbObject.eObject);
+
+		for (Entry<String, Object> field : dbObject.fields.entrySet())
+		{
+			if (!Keywords.ID_KEY.equals(field.getKey()))
+				_putObjectField(field.getKey(), field.getValue());
+		}
+
+		_buf.write(BSON.EOO);
+		_buf.writeInt(start, _buf.getPosition() - start);
+		return _buf.getPosition() - start;
+	}
+
+	/**
+	 * Writes an embedded document for the EMF object.
+	 *
+	 * @param name the field name
+	 * @param builder the builder whose settings are used to serialize the EMF object
+	 * @param eObject the EMF object to serialize
+	 */
+	private void putEObject(String name, DBObjectBuilderImpl builder, EObject eObject)
+	{
+		_put(BSON.OBJECT, name);
+		int start = _buf.getPosition();
+		_buf.writeInt(0);
+		putEObjectFields(builder, eObject);
+		_buf.write(BSON.EOO);
+		_buf.writeInt(start, _buf.getPosition() - start);
+	}
+
+	/**
+	 * Writes the fields of the EMF object in the order DBObjectBuilderImpl.buildDBObject() puts them.
+	 *
+	 * @param builder the builder whose settings are used to serialize the EMF object
+	 * @param eObject the EMF object to serialize
+	 */
+	private void putEObjectFields(DBObjectBuilderImpl builder, EObject eObject)
+	{
+		WritePlan plan = builder.getPlanCache().getWritePlan(eObject.eClass());
+
+		_putObjectField(Keywords.ECLASS_KEY, plan.eClassURI);
+
+		Resource resource = eObject.eResource();
+
+		if (resource instanceof XMLResource)
+		{
+			String id = ((XMLResource) resource).getID(eObject);
+
+			if (id != null)
+				_putObjectField(Keywords.EXTRINSIC_ID_KEY, id);
+		}
+
+		for (WritePlan.AttributeEntry entry : plan.attributes)
+		{
+			if (!eObject.eIsSet(entry.attribute) && (entry.isUnsettable || !builder.isSerializeDefaultAttributeValues()))
+				continue;
+
+			Object value = eObject.eGet(entry.attribute);
+
+			if (entry.isFeatureMap)
+			{
+				BasicDBObject featureMap = new BasicDBObject();
+				builder.buildFeatureMap(featureMap, entry.attribute, value);
+				_putObjectField(entry.key, featureMap.get(entry.key));
+			}
+			else if (entry.isMany && entry.converter != null)
+			{
+				EList<?> values = (EList<?>) value;
+				int start = startArray(entry.key);
+
+				for (int i = 0; i < values.size(); i++)
+					_putObjectField(String.valueOf(i), entry.convert(values.get(i)));
+
+				endArray(start);
+			}
+			else
+				_putObjectField(entry.key, entry.convert(value));
+		}
+
+		for (EReference reference : plan.references)
+		{
+			if (!eObject.eIsSet(reference))
+				continue;
+
+			Object value = eObject.eGet(reference, false);
+
+			if (reference.isMany())
+			{
+				@SuppressWarnings("unchecked")
+				List<EObject> targetObjects = ((InternalEList<EObject>) value).basicList();
+				int start = startArray(reference.getName());
+
+				for (int i = 0; i < targetObjects.size(); i++)
+					putReferencedObject(String.valueOf(i), builder, reference, targetObjects.get(i));
+
+				endArray(start);
+			}
+			else if (value != null)
+				putReferencedObject(reference.getName(), builder, reference, (EObject) value);
+			else
+				putNull(reference.getName());
+		}
+	}
+
+	/**
+	 * Writes the referenced object as an embedded document or a proxy as
+	 * DBObjectBuilderImpl.buildReferencedObject() would build it.
+	 *
+	 * @param name the field name
+	 * @param builder the builder whose settings are used to serialize the EMF object
+	 * @param eReference the reference to serialize
+	 * @param targetObject the referenced object
+	 */
+	private void putReferencedObject(String name, DBObjectBuilderImpl builder, EReference eReference, EObject targetObject)
+	{
+		InternalEObject internalEObject = (InternalEObject) targetObject;
+
+		if (internalEObject.eProxyURI() != null || !eReference.isContainment() || (eReference.isResolveProxies() && internalEObject.eDirectResource() != null))
+			_putObjectField(name, builder.buildReferencedObject(eReference, targetObject));
+		else
+			putEObject(name, builder, targetObject);
+	}
+
+	/**
+	 * @param name the field name
+	 * @return the position of the array size
+	 */
+	private int startArray(String name)
+	{
+		_put(BSON.ARRAY, name);
+		int start = _buf.getPosition();
+		_buf.writeInt(0);
+		return start;
+	}
+
+	/**
+	 * @param start the position of the array size returned by startArray()
+	 */
+	private void endArray(int start)
+	{
+		_buf.write(BSON.EOO);
+		_buf.writeInt(start, _buf.getPosition() - start);
+	}
+}
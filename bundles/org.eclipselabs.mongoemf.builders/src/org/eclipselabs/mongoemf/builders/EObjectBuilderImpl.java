@@ -32,13 +32,17 @@ import org.eclipse.emf.ecore.util.FeatureMap;
 import org.eclipse.emf.ecore.util.FeatureMapUtil;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipselabs.mongoemf.ConverterService;
-import org.eclipselabs.mongoemf.EObjectBuilder;
+import org.eclipselabs.mongoemf.DirectEObjectBuilder;
+import org.eclipselabs.mongoemf.EClassCache;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
 
 import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
+import com.mongodb.DBDecoder;
+import com.mongodb.DBDecoderFactory;
 import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
 
 /**
  * This class builds EMF EObjects from a MongoDB DBObject. This builder is designed to be extensible,
@@ -48,7 +52,7 @@ import com.mongodb.DBObject;
  * 
  * @author bhunt
  */
-public class EObjectBuilderImpl implements EObjectBuilder
+public class EObjectBuilderImpl implements DirectEObjectBuilder
 {
 	/**
 	 * Constructs an object builder without an EClass cache.
@@ -59,7 +63,7 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	 */
 	public EObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean includeAttributesForProxyReferences)
 	{
-		this(converterService, uriHandler, includeAttributesForProxyReferences, null);
+		this(converterService, uriHandler, includeAttributesForProxyReferences, (EClassCache) null);
 	}
 
 	/**
@@ -70,16 +74,69 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	 * @param includeAttributesForProxyReferences true if you want attribute values to be set on proxy references; false otherwise
 	 * @param eClassCache the cache to use to EClass lookups when building the EObject instance - may be null
 	 */
+	public EObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean includeAttributesForProxyReferences, EClassCache eClassCache)
+	{
+		this(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache, new PlanCache(converterService));
+	}
+
+	/**
+	 * Constructs an object builder with an optional map of EClass URI to EClass used as the EClass
+	 * cache.
+	 * 
+	 * @param converterService the service to use when converting attribute values
+	 * @param uriHandler the handler for creating proxy URIs
+	 * @param includeAttributesForProxyReferences true if you want attribute values to be set on proxy references; false otherwise
+	 * @param eClassCache the map to use to cache EClass lookups when building the EObject instance - may be null
+	 * @deprecated use {@link #EObjectBuilderImpl(ConverterService, XMLResource.URIHandler, boolean, EClassCache)}, whose
+	 *             cache is shared between loads and invalidated when a package is registered again
+	 */
+	@Deprecated
 	public EObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean includeAttributesForProxyReferences, Map<String, EClass> eClassCache)
+	{
+		this(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache != null ? new MapEClassCache(eClassCache) : null);
+	}
+
+	/**
+	 * Constructs an object builder with an optional EClass cache and a shared plan cache.
+	 * 
+	 * @param converterService the service to use when converting attribute values
+	 * @param uriHandler the handler for creating proxy URIs
+	 * @param includeAttributesForProxyReferences true if you want attribute values to be set on proxy references; false otherwise
+	 * @param eClassCache the cache to use to EClass lookups when building the EObject instance - may be null
+	 * @param planCache the cache of deserialization plans shared by the builders using the converter service
+	 */
+	EObjectBuilderImpl(ConverterService converterService, XMLResource.URIHandler uriHandler, boolean includeAttributesForProxyReferences, EClassCache eClassCache, PlanCache planCache)
 	{
 		this.converterService = converterService;
 		this.uriHandler = uriHandler;
 		this.includeAttributesForProxyReferences = includeAttributesForProxyReferences;
 		this.eClassCache = eClassCache;
+		this.planCache = planCache;
+
+		// The attributes are built from the read plans unless a subclass customizes how attributes
+		// are built, in which case they are built through its functions. The decoders build the
+		// attributes and references themselves, so they are only used if neither is customized.
+
+		Class<?> type = getClass();
+		callAttributeHooks = DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildAttribute", DBCollection.class, DBObject.class, Resource.class, EObject.class, EAttribute.class)
+				|| DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildAttributeArray", EObject.class, EAttribute.class, Object.class)
+				|| DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildAttributeValue", EObject.class, EAttribute.class, Object.class)
+				|| DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "convertMongoDBValueToEMFValue", EDataType.class, Object.class);
+		decodeDirectly = !callAttributeHooks
+				&& !DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildEObject", DBCollection.class, DBObject.class, Resource.class, boolean.class)
+				&& !DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildReference", DBCollection.class, DBObject.class, Resource.class, EObject.class, EReference.class)
+				&& !DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildReferencedObject", DBCollection.class, DBObject.class, Resource.class, boolean.class)
+				&& !DBObjectBuilderImpl.isOverridden(type, EObjectBuilderImpl.class, "buildProxy", DBCollection.class, DBObject.class, ResourceSet.class, boolean.class);
 	}
 
 	/**
-	 * Build an EMF EObject from the supplied DBObject from MongoDB.
+	 * Build an EMF EObject from the supplied DBObject from MongoDB. The keys of the DBObject
+	 * are visited once and mapped to features using the cached read plan of the EClass, so
+	 * features that are not present in the DBObject cost nothing. Attribute values are
+	 * decoded with the decoder recorded in the plan. If a subclass overrides buildAttribute(),
+	 * buildAttributeArray(), buildAttributeValue(), or convertMongoDBValueToEMFValue(), the
+	 * attributes are built through buildAttribute() instead. References are built through
+	 * buildReference().
 	 * 
 	 * @param collection the MongoDB collection containing the DBObject
 	 * @param dbObject the object read from MongoDB
@@ -93,44 +150,158 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	@Override
 	public EObject buildEObject(DBCollection collection, DBObject dbObject, Resource resource, boolean isProxy)
 	{
+		// The attributes of the proxies built for the object and the objects it contains are
+		// fetched in bulk once the outermost object has been built.
+
+		if (!includeAttributesForProxyReferences || proxyBatch.get() != null)
+			return buildObject(collection, dbObject, resource, isProxy);
+
+		ProxyBatch batch = new ProxyBatch();
+		proxyBatch.set(batch);
+
+		try
+		{
+			EObject eObject = buildObject(collection, dbObject, resource, isProxy);
+			buildProxyAttributes(batch);
+			return eObject;
+		}
+		finally
+		{
+			proxyBatch.remove();
+		}
+	}
+
+	/**
+	 * Builds the EMF EObject from the supplied DBObject as described by buildEObject().
+	 * 
+	 * @param collection the MongoDB collection containing the DBObject
+	 * @param dbObject the object read from MongoDB
+	 * @param resource the resource that will contain the EMF Object
+	 * @param isProxy true if the object is to be built as a proxy; false otherwise
+	 * @return the newly created EMF object instance
+	 */
+	private EObject buildObject(DBCollection collection, DBObject dbObject, Resource resource, boolean isProxy)
+	{
+		if (dbObject instanceof EObjectDBCallback.ObjectFrame)
+		{
+			EObjectDBCallback.ObjectFrame frame = (EObjectDBCallback.ObjectFrame) dbObject;
+
+			if (frame.getEObject() != null)
+				return buildDecodedObject(collection, frame, resource, isProxy);
+		}
+
 		// Build an empty EMF object to hold the data from the MongodDB object
 		// This function should not add the object to the resource since the
 		// object may become part of a collection returned in the resource such
 		// as the result of a query.
 
 		EObject eObject = createEObject(resource.getResourceSet(), dbObject);
-		EClass eClass = eObject.eClass();
+		ReadPlan plan = planCache.getReadPlan(eObject.eClass());
 
 		// Load the XML extrinsic id if necessary
 
 		buildExtransicID(dbObject, resource, eObject);
 
-		// All attributes are mapped as key / value pairs with the key being the attribute name.
+		// All features are mapped as key / value pairs with the key being the feature name.
+		// isProxy will be set to true when the object is being returned as part of a
+		// collection such as the result of a query, in which case only the attributes
+		// are built.
 
-		for (EAttribute attribute : eClass.getEAllAttributes())
+		for (String key : dbObject.keySet())
 		{
-			if (!isProxy || !FeatureMapUtil.isFeatureMap(attribute))
-				buildAttribute(collection, dbObject, resource, eObject, attribute);
-		}
+			ReadPlan.FeatureEntry entry = plan.getFeature(key);
 
-		// isProxy will be set to true when the object is being returned as
-		// part of a collection such as the result of a query.
+			if (entry == null)
+				continue;
 
-		if (isProxy)
-		{
-			URI proxyURI = URI.createURI("../" + collection.getName() + "/" + dbObject.get(Keywords.ID_KEY) + "#/");
-			((InternalEObject) eObject).eSetProxyURI(uriHandler.resolve(proxyURI));
-			return eObject;
-		}
+			if (entry.isAttribute)
+			{
+				if (isProxy && entry.isFeatureMap)
+					continue;
 
-		// All references are mapped as key / value pairs with the key being the reference name.
+				if (callAttributeHooks)
+					buildAttribute(collection, dbObject, resource, eObject, (EAttribute) entry.feature);
+				else
+					buildAttribute(collection, resource, eObject, entry, dbObject.get(key));
+			}
+			else if (!isProxy)
+				buildReference(collection, dbObject, resource, eObject, (EReference) entry.feature);
+		}
 
-		for (EReference reference : eClass.getEAllReferences())
-			buildReference(collection, dbObject, resource, eObject, reference);
+		if (isProxy)
+			setProxyURI(collection, dbObject.get(Keywords.ID_KEY), eObject);
 
 		return eObject;
 	}
 
+	/**
+	 * Completes an EMF object that was built while its document was decoded by a decoder created
+	 * by getDBDecoderFactory(). The references that could not be built while decoding are built,
+	 * and the proxies built while decoding are added to the current batch of proxies.
+	 * 
+	 * @param collection the MongoDB collection containing the DBObject
+	 * @param frame the decoded document
+	 * @param resource the resource that will contain the EMF Object
+	 * @param isProxy true if the object is to be built as a proxy; false otherwise
+	 * @return the EMF object built while decoding
+	 */
+	private EObject buildDecodedObject(DBCollection collection, EObjectDBCallback.ObjectFrame frame, Resource resource, boolean isProxy)
+	{
+		if (!frame.isDecodedFor(resource, isProxy))
+			throw new IllegalArgumentException("The object was decoded for a different resource or proxy setting");
+
+		for (EObjectDBCallback.DeferredReference deferredReference : frame.getDeferredReferences())
+			buildReference(collection, resource, deferredReference.eObject, deferredReference.reference, deferredReference.value);
+
+		ProxyBatch batch = proxyBatch.get();
+
+		if (batch != null && frame.getProxyBatch() != null)
+			batch.addAll(frame.getProxyBatch());
+
+		return frame.getEObject();
+	}
+
+	/**
+	 * Sets the proxy URI of an object built as the result of a query.
+	 * 
+	 * @param collection the MongoDB collection containing the object
+	 * @param id the id of the object
+	 * @param eObject the EMF object being built
+	 */
+	void setProxyURI(DBCollection collection, Object id, EObject eObject)
+	{
+		URI proxyURI = URI.createURI("../" + collection.getName() + "/" + id + "#/");
+		((InternalEObject) eObject).eSetProxyURI(uriHandler.resolve(proxyURI));
+	}
+
+	/**
+	 * Creates a factory of decoders that build the EMF objects while decoding the BSON read from
+	 * MongoDB. The objects built are the same as those built by buildEObject() from the DBObjects
+	 * decoded by the default decoder, but the EMF object is created directly from the fields as
+	 * they are decoded using the cached read plans. If a subclass overrides a function used to
+	 * build attributes, references, or embedded objects, the factory of the default decoders is
+	 * returned instead so that buildEObject() builds the object through those functions.
+	 * 
+	 * @param resource the resource that will contain the EMF objects
+	 * @param isProxy true if the objects are to be built as proxies; false otherwise
+	 * @return the factory of the decoders
+	 */
+	@Override
+	public DBDecoderFactory getDBDecoderFactory(final Resource resource, final boolean isProxy)
+	{
+		if (!decodeDirectly)
+			return DefaultDBDecoder.FACTORY;
+
+		return new DBDecoderFactory()
+		{
+			@Override
+			public DBDecoder create()
+			{
+				return new EObjectDBDecoder(EObjectBuilderImpl.this, resource, isProxy);
+			}
+		};
+	}
+
 	@Override
 	public URI buildURI(DBCollection collection, DBObject object)
 	{
@@ -169,6 +340,41 @@ public class EObjectBuilderImpl implements EObjectBuilder
 		}
 	}
 
+	/**
+	 * Builds an attribute value described by a read plan entry.
+	 * 
+	 * @param collection the MongoDB collection containing the DBObject
+	 * @param resource the resource that will contain the EMF Object
+	 * @param eObject the EMF object being built
+	 * @param entry the plan entry of the attribute to set on the EMF object
+	 * @param value the raw, unconverted, value read from MongoDB
+	 */
+	@SuppressWarnings("unchecked")
+	void buildAttribute(DBCollection collection, Resource resource, EObject eObject, ReadPlan.FeatureEntry entry, Object value)
+	{
+		EAttribute attribute = (EAttribute) entry.feature;
+
+		if (entry.isFeatureMap)
+			buildFeatureMap(collection, resource, eObject, attribute, (List<DBObject>) value);
+		else if (entry.isMany)
+		{
+			if (!entry.decoder.isIdentity())
+			{
+				List<Object> dbValues = (List<Object>) value;
+				ArrayList<Object> convertedValues = new ArrayList<Object>(dbValues.size());
+
+				for (Object dbValue : dbValues)
+					convertedValues.add(entry.decoder.decode(dbValue));
+
+				value = convertedValues;
+			}
+
+			eObject.eSet(attribute, value);
+		}
+		else
+			eObject.eSet(attribute, entry.decoder.decode(value));
+	}
+
 	/**
 	 * Builds a multi-value attribute from a collection of values. Each value is
 	 * converted using the converter service.
@@ -277,34 +483,45 @@ public class EObjectBuilderImpl implements EObjectBuilder
 		// References are mapped as key / value pairs with the key being the reference name.
 
 		if (!reference.isTransient() && dbObject.containsField(reference.getName()))
-		{
-			boolean isResolveProxies = reference.isResolveProxies();
+			buildReference(collection, resource, eObject, reference, dbObject.get(reference.getName()));
+	}
 
-			if (reference.isMany())
-			{
-				// One to many reference
+	/**
+	 * Builds a reference value from the value stored under the reference name in the DBObject.
+	 * 
+	 * @param collection the MongoDB collection containing the DBObject
+	 * @param resource the resource that will contain the EMF Object
+	 * @param eObject the EMF object being built
+	 * @param reference the reference to set on the EMF object
+	 * @param value a java.util.List of DBObject for references with cardinality greater than one; a DBObject otherwise
+	 */
+	private void buildReference(DBCollection collection, Resource resource, EObject eObject, EReference reference, Object value)
+	{
+		boolean isResolveProxies = reference.isResolveProxies();
+
+		if (reference.isMany())
+		{
+			// One to many reference
 
-				@SuppressWarnings("unchecked")
-				List<DBObject> dbReferences = (List<DBObject>) dbObject.get(reference.getName());
+			@SuppressWarnings("unchecked")
+			List<DBObject> dbReferences = (List<DBObject>) value;
 
-				@SuppressWarnings("unchecked")
-				EList<EObject> eObjects = (EList<EObject>) eObject.eGet(reference);
+			@SuppressWarnings("unchecked")
+			EList<EObject> eObjects = (EList<EObject>) eObject.eGet(reference);
 
-				for (DBObject dbReference : dbReferences)
-				{
-					EObject target = buildReferencedObject(collection, dbReference, resource, isResolveProxies);
-					eObjects.add(target);
-				}
-			}
-			else
+			for (DBObject dbReference : dbReferences)
 			{
-				// One to one reference
-
-				DBObject dbReference = (DBObject) dbObject.get(reference.getName());
 				EObject target = buildReferencedObject(collection, dbReference, resource, isResolveProxies);
-				eObject.eSet(reference, target);
+				eObjects.add(target);
 			}
 		}
+		else
+		{
+			// One to one reference
+
+			EObject target = buildReferencedObject(collection, (DBObject) value, resource, isResolveProxies);
+			eObject.eSet(reference, target);
+		}
 	}
 
 	/**
@@ -345,6 +562,21 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	 * @return the proxy object when referenceResolvedProxies is true, the resolved object otherwise
 	 */
 	protected EObject buildProxy(DBCollection collection, DBObject dbReference, ResourceSet resourceSet, boolean referenceResolvesProxies)
+	{
+		return buildProxy(collection, dbReference, resourceSet, referenceResolvesProxies, proxyBatch.get());
+	}
+
+	/**
+	 * Builds an EMF proxy object from the reference DBObject as described by buildProxy().
+	 * 
+	 * @param collection the collection containing the referencing object
+	 * @param dbReference the MongoDB reference - must be of the form { ECLASS_KEY : eClassURI, PROXY_KEY : proxyURI }
+	 * @param resourceSet the resource set to use for building the proxy
+	 * @param referenceResolvesProxies true if the reference resolves proxies; false otherwise
+	 * @param batch the batch to add the proxy to, or null if the attributes of the proxy are to be fetched immediately
+	 * @return the proxy object when referenceResolvedProxies is true, the resolved object otherwise
+	 */
+	EObject buildProxy(DBCollection collection, DBObject dbReference, ResourceSet resourceSet, boolean referenceResolvesProxies, ProxyBatch batch)
 	{
 		EObject eObject;
 		URI proxyURI = URI.createURI((String) dbReference.get(Keywords.PROXY_KEY));
@@ -377,22 +609,90 @@ public class EObjectBuilderImpl implements EObjectBuilder
 
 				if (referenceCollection != null)
 				{
-					DBObject referenceDBObject = new BasicDBObject(Keywords.ID_KEY, new ObjectId(proxyURI.lastSegment()));
-					DBObject referencedDBObject = referenceCollection.findOne(referenceDBObject);
+					// The attributes are fetched along with those of the other proxies built for the
+					// same outermost object. A proxy built outside of buildEObject() is fetched on its own.
 
-					if (referencedDBObject != null)
+					if (batch != null)
+						batch.add(referenceCollection, getID(proxyURI.lastSegment()), eObject);
+					else
 					{
-						for (EAttribute attribute : eObject.eClass().getEAllAttributes())
+						batch = new ProxyBatch();
+						batch.add(referenceCollection, getID(proxyURI.lastSegment()), eObject);
+						buildProxyAttributes(batch);
+					}
+				}
+			}
+		}
+
+		return eObject;
+	}
+
+	/**
+	 * Sets the attribute values on the proxies in the batch. The referenced objects are fetched
+	 * with one query per collection, or more if there are more than MAX_PROXY_IDS_PER_QUERY
+	 * proxies for the collection, and the fields returned are limited to the non-transient
+	 * attributes of the proxies.
+	 * 
+	 * @param batch the proxies whose attributes must be set
+	 */
+	private void buildProxyAttributes(ProxyBatch batch)
+	{
+		for (ProxyBatch.Target target : batch.getTargets())
+		{
+			if (target.attributeNames.isEmpty())
+				continue;
+
+			BasicDBObject projection = new BasicDBObject();
+
+			for (String attributeName : target.attributeNames)
+				projection.put(attributeName, 1);
+
+			ArrayList<Object> ids = new ArrayList<Object>(target.proxies.keySet());
+
+			for (int start = 0; start < ids.size(); start += MAX_PROXY_IDS_PER_QUERY)
+			{
+				List<Object> idsInQuery = ids.subList(start, Math.min(start + MAX_PROXY_IDS_PER_QUERY, ids.size()));
+				DBObject filter = new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", idsInQuery));
+
+				for (DBObject referencedDBObject : target.collection.find(filter, projection))
+				{
+					List<EObject> proxies = target.proxies.get(referencedDBObject.get(Keywords.ID_KEY));
+
+					if (proxies == null)
+						continue;
+
+					for (EObject proxy : proxies)
+					{
+						ReadPlan plan = planCache.getReadPlan(proxy.eClass());
+
+						for (String key : referencedDBObject.keySet())
 						{
-							if (!attribute.isTransient() && !FeatureMapUtil.isFeatureMap(attribute))
-								buildAttribute(referenceCollection, referencedDBObject, null, eObject, attribute);
+							ReadPlan.FeatureEntry entry = plan.getFeature(key);
+
+							if (entry == null || !entry.isAttribute || entry.isFeatureMap)
+								continue;
+
+							if (callAttributeHooks)
+								buildAttribute(target.collection, referencedDBObject, null, proxy, (EAttribute) entry.feature);
+							else
+								buildAttribute(target.collection, null, proxy, entry, referencedDBObject.get(key));
 						}
 					}
 				}
 			}
 		}
+	}
 
-		return eObject;
+	/**
+	 * Converts the id segment of a proxy URI into the id of the referenced object. As with
+	 * MongoUtils.getID(), a segment that is not a valid ObjectId is used as is.
+	 * 
+	 * @param segment the last segment of the proxy URI
+	 * @return the id of the referenced object
+	 */
+	private Object getID(String segment)
+	{
+		return ObjectId.isValid(segment) ? new ObjectId(segment) : segment;
 	}
 
 	/**
@@ -432,8 +732,7 @@ public class EObjectBuilderImpl implements EObjectBuilder
 
 	/**
 	 * This function creates an empty EObject by extracting the EClass type from the given DBObject
-	 * using the ECLASS_KEY. This function also maintains a static cache of EClass URI to EClass for
-	 * improved performance.
+	 * using the ECLASS_KEY. The EClass is looked up in the EClass cache when one was supplied.
 	 * 
 	 * @param resourceSet the resourceSet that will be used to locate the EClass if it is not cached
 	 * @param dbObject the object read from MongoDB
@@ -457,26 +756,27 @@ public class EObjectBuilderImpl implements EObjectBuilder
 	protected EClass getEClass(ResourceSet resourceSet, String eClassURI)
 	{
 		if (eClassCache != null)
-		{
-			synchronized (eClassCache)
-			{
-				EClass eClass = eClassCache.get(eClassURI);
-
-				if (eClass == null)
-				{
-					eClass = (EClass) resourceSet.getEObject(URI.createURI(eClassURI), true);
-					eClassCache.put(eClassURI, eClass);
-				}
-
-				return eClass;
-			}
-		}
+			return eClassCache.getEClass(resourceSet, eClassURI);
 
 		return (EClass) resourceSet.getEObject(URI.createURI(eClassURI), true);
 	}
 
+	/**
+	 * @return the cache of deserialization plans used by this builder
+	 */
+	PlanCache getPlanCache()
+	{
+		return planCache;
+	}
+
 	private ConverterService converterService;
 	private XMLResource.URIHandler uriHandler;
-	private Map<String, EClass> eClassCache;
+	private EClassCache eClassCache;
 	private boolean includeAttributesForProxyReferences;
+	private PlanCache planCache;
+	private boolean callAttributeHooks;
+	private boolean decodeDirectly;
+	private ThreadLocal<ProxyBatch> proxyBatch = new ThreadLocal<ProxyBatch>();
+
+	private static final int MAX_PROXY_IDS_PER_QUERY = 1000;
 }
@@ -0,0 +1,451 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bson.BSONObject;
+import org.eclipse.emf.common.util.EList;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DefaultDBCallback;
+
+/**
+ * A decoder callback that builds EMF objects as the fields of a document are decoded instead
+ * of building a DBObject for every document and embedded document. The EMF object is created
+ * as soon as its ECLASS_KEY field is decoded and each following field is set on it using the
+ * read plan of its class. Fields decoded before the ECLASS_KEY field are kept until it arrives.
+ *
+ * The values of attributes, feature maps, and keys that do not map to a feature are decoded
+ * into DBObjects and lists as usual. References whose value cannot be built while decoding,
+ * such as proxies that must be resolved in place, are recorded and built by EObjectBuilderImpl
+ * once decoding is done so that no other object is loaded while the driver is reading the
+ * response.
+ *
+ * The DBObject returned for each document is an ObjectFrame holding the EMF object along with
+ * the fields that do not map to a feature, such as the id and time stamp.
+ *
+ * This class is not thread safe.
+ *
+ * @author bhunt
+ */
+final class EObjectDBCallback extends DefaultDBCallback
+{
+	/**
+	 * @param builder the builder whose settings are used to build the EMF objects
+	 * @param collection the collection being read
+	 * @param resource the resource that will contain the EMF objects
+	 * @param isProxy true if the objects are to be built as proxies; false otherwise
+	 */
+	EObjectDBCallback(EObjectBuilderImpl builder, DBCollection collection, Resource resource, boolean isProxy)
+	{
+		super(collection);
+		this.builder = builder;
+		this.collection = collection;
+		this.resource = resource;
+		this.isProxy = isProxy;
+	}
+
+	@Override
+	public BSONObject create(boolean array, List<String> path)
+	{
+		if (isStackEmpty())
+		{
+			root = new ObjectFrame(null, null, null);
+			return root;
+		}
+
+		BSONObject parent = cur();
+		String key = path.get(path.size() - 1);
+
+		if (parent instanceof ObjectFrame)
+		{
+			EReference reference = ((ObjectFrame) parent).getReference(key);
+
+			if (reference != null && reference.isMany() == array)
+				return array ? new ReferenceList((ObjectFrame) parent, key, reference) : new ObjectFrame((ObjectFrame) parent, key, reference);
+		}
+		else if (parent instanceof ReferenceList && !array)
+			return new ObjectFrame(null, key, ((ReferenceList) parent).reference);
+
+		return array ? new GenericList(parent, key) : new GenericObject(parent, key);
+	}
+
+	@Override
+	public Object objectDone()
+	{
+		BSONObject object = cur();
+		Object result = super.objectDone();
+
+		if (object instanceof Frame)
+			((Frame) object).done();
+
+		return result;
+	}
+
+	/**
+	 * A DBObject or list built by this callback that must be told when its last field has been decoded.
+	 */
+	private interface Frame
+	{
+		void done();
+	}
+
+	/**
+	 * A document that is built as an EMF object: a top level document, or the value of a reference.
+	 */
+	final class ObjectFrame extends BasicDBObject implements Frame
+	{
+		private static final long serialVersionUID = 1L;
+
+		/**
+		 * @param parent the frame of the object containing this document, or null if the document is
+		 *          at the top level or in a reference list
+		 * @param key the key of the document in its parent
+		 * @param reference the reference whose value is this document, or null if the document is at the
+		 *          top level
+		 */
+		ObjectFrame(ObjectFrame parent, String key, EReference reference)
+		{
+			this.parent = parent;
+			this.key = key;
+			this.reference = reference;
+
+			if (reference == null)
+			{
+				proxyBatch = new ProxyBatch();
+				deferredReferences = new ArrayList<DeferredReference>();
+			}
+		}
+
+		@Override
+		public Object put(String key, Object value)
+		{
+			if (eObject == null)
+			{
+				Object previousValue = super.put(key, value);
+
+				if (Keywords.ECLASS_KEY.equals(key) && (reference == null || !containsField(Keywords.PROXY_KEY)))
+					buildEObject();
+
+				return previousValue;
+			}
+
+			ReadPlan.FeatureEntry entry = plan.getFeature(key);
+
+			if (entry == null)
+				return super.put(key, value);
+
+			// Documents and lists are set once all of their fields have been decoded.
+
+			if (!(value instanceof Frame))
+				buildFeature(entry, value);
+
+			return null;
+		}
+
+		/**
+		 * @return the EMF object built from the document, or null if the document is not an EMF object
+		 */
+		EObject getEObject()
+		{
+			return eObject;
+		}
+
+		/**
+		 * @param resource the resource the caller expects the object to be built for
+		 * @param isProxy the proxy setting the caller expects the object to be built with
+		 * @return true if the object was decoded with the given settings; false otherwise
+		 */
+		boolean isDecodedFor(Resource resource, boolean isProxy)
+		{
+			return EObjectDBCallback.this.resource == resource && EObjectDBCallback.this.isProxy == isProxy;
+		}
+
+		/**
+		 * @return the proxies built while decoding the top level document whose attributes have yet to be
+		 *         fetched, or null if this is not a top level document
+		 */
+		ProxyBatch getProxyBatch()
+		{
+			return proxyBatch;
+		}
+
+		/**
+		 * @return the references of the top level document and its embedded documents that must be built once
+		 *         decoding is done
+		 */
+		List<DeferredReference> getDeferredReferences()
+		{
+			if (deferredReferences == null)
+				return Collections.emptyList();
+
+			return deferredReferences;
+		}
+
+		@Override
+		public void done()
+		{
+			if (eObject != null)
+			{
+				if (reference != null && containsField(Keywords.PROXY_KEY))
+					eObject = null;
+				else
+				{
+					builder.buildExtransicID(this, resource, eObject);
+
+					if (reference == null && isProxy)
+						builder.setProxyURI(collection, get(Keywords.ID_KEY), eObject);
+				}
+			}
+
+			if (parent != null)
+				parent.childDone(key, this);
+		}
+
+		/**
+		 * @param key the key of a document or list in this document
+		 * @return the reference to build from the value of the key, or null if the value is not to be built as
+		 *         a reference while decoding
+		 */
+		EReference getReference(String key)
+		{
+			if (eObject == null || (reference == null && isProxy))
+				return null;
+
+			ReadPlan.FeatureEntry entry = plan.getFeature(key);
+
+			if (entry == null || entry.isAttribute)
+				return null;
+
+			return (EReference) entry.feature;
+		}
+
+		/**
+		 * Called when the last field of a document or list in this document has been decoded.
+		 *
+		 * @param key the key of the document or list
+		 * @param value the document or list
+		 */
+		void childDone(String key, Object value)
+		{
+			if (eObject == null)
+				return;
+
+			ReadPlan.FeatureEntry entry = plan.getFeature(key);
+
+			if (entry != null)
+				buildFeature(entry, value);
+		}
+
+		/**
+		 * @return the referenced object built from this document
+		 */
+		EObject getTarget()
+		{
+			if (eObject != null)
+				return eObject;
+
+			return builder.buildProxy(collection, this, resource.getResourceSet(), true, root.proxyBatch);
+		}
+
+		/**
+		 * @return true if the document is a proxy that must be resolved by loading the referenced object
+		 */
+		boolean isUnresolvedProxy()
+		{
+			return eObject == null && !reference.isResolveProxies();
+		}
+
+		/**
+		 * Creates the EMF object once its class is known and sets the features decoded so far.
+		 */
+		private void buildEObject()
+		{
+			eObject = builder.createEObject(resource.getResourceSet(), this);
+			plan = builder.getPlanCache().getReadPlan(eObject.eClass());
+
+			ArrayList<String> keys = new ArrayList<String>(keySet());
+
+			for (String key : keys)
+			{
+				ReadPlan.FeatureEntry entry = plan.getFeature(key);
+
+				if (entry != null)
+					buildFeature(entry, removeField(key));
+			}
+		}
+
+		/**
+		 * @param entry the plan entry of the feature
+		 * @param value the value of the feature with all of its fields decoded
+		 */
+		private void buildFeature(ReadPlan.FeatureEntry entry, Object value)
+		{
+			boolean isProxyObject = reference == null && isProxy;
+
+			if (entry.isAttribute)
+			{
+				if (!isProxyObject || !entry.isFeatureMap)
+					builder.buildAttribute(collection, resource, eObject, entry, value);
+			}
+			else if (!isProxyObject)
+			{
+				EReference eReference = (EReference) entry.feature;
+
+				if (value instanceof ReferenceList && !((ReferenceList) value).hasUnresolvedProxies())
+				{
+					@SuppressWarnings("unchecked")
+					EList<EObject> eObjects = (EList<EObject>) eObject.eGet(eReference);
+
+					for (Object element : (ReferenceList) value)
+						eObjects.add(element == null ? null : ((ObjectFrame) element).getTarget());
+				}
+				else if (value instanceof ObjectFrame && !((ObjectFrame) value).isUnresolvedProxy())
+					eObject.eSet(eReference, ((ObjectFrame) value).getTarget());
+				else if (value == null && !eReference.isMany())
+					eObject.eSet(eReference, null);
+				else
+					root.deferredReferences.add(new DeferredReference(eObject, eReference, value));
+			}
+		}
+
+		private final ObjectFrame parent;
+		private final String key;
+		private final EReference reference;
+		private ProxyBatch proxyBatch;
+		private List<DeferredReference> deferredReferences;
+		private EObject eObject;
+		private ReadPlan plan;
+	}
+
+	/**
+	 * A reference value that is built by EObjectBuilderImpl once decoding is done.
+	 */
+	static final class DeferredReference
+	{
+		DeferredReference(EObject eObject, EReference reference, Object value)
+		{
+			this.eObject = eObject;
+			this.reference = reference;
+			this.value = value;
+		}
+
+		final EObject eObject;
+		final EReference reference;
+		final Object value;
+	}
+
+	/**
+	 * The list of the objects of a multi-valued reference.
+	 */
+	private static final class ReferenceList extends BasicDBList implements Frame
+	{
+		private static final long serialVersionUID = 1L;
+
+		ReferenceList(ObjectFrame parent, String key, EReference reference)
+		{
+			this.parent = parent;
+			this.key = key;
+			this.reference = reference;
+		}
+
+		/**
+		 * @return true if the list holds a proxy that must be resolved by loading the referenced object
+		 */
+		boolean hasUnresolvedProxies()
+		{
+			if (reference.isResolveProxies())
+				return false;
+
+			for (Object element : this)
+			{
+				if (element instanceof ObjectFrame && ((ObjectFrame) element).isUnresolvedProxy())
+					return true;
+			}
+
+			return false;
+		}
+
+		@Override
+		public void done()
+		{
+			parent.childDone(key, this);
+		}
+
+		private final ObjectFrame parent;
+		private final String key;
+		final EReference reference;
+	}
+
+	/**
+	 * A document that is not built as an EMF object.
+	 */
+	private static final class GenericObject extends BasicDBObject implements Frame
+	{
+		private static final long serialVersionUID = 1L;
+
+		GenericObject(BSONObject parent, String key)
+		{
+			this.parent = parent;
+			this.key = key;
+		}
+
+		@Override
+		public void done()
+		{
+			if (parent instanceof ObjectFrame)
+				((ObjectFrame) parent).childDone(key, this);
+		}
+
+		private final BSONObject parent;
+		private final String key;
+	}
+
+	/**
+	 * A list that is not built as the objects of a reference.
+	 */
+	private static final class GenericList extends BasicDBList implements Frame
+	{
+		private static final long serialVersionUID = 1L;
+
+		GenericList(BSONObject parent, String key)
+		{
+			this.parent = parent;
+			this.key = key;
+		}
+
+		@Override
+		public void done()
+		{
+			if (parent instanceof ObjectFrame)
+				((ObjectFrame) parent).childDone(key, this);
+		}
+
+		private final BSONObject parent;
+		private final String key;
+	}
+
+	private final EObjectBuilderImpl builder;
+	private final DBCollection collection;
+	private final Resource resource;
+	private final boolean isProxy;
+	private ObjectFrame root;
+}
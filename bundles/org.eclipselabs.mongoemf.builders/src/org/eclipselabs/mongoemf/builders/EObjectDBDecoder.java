@@ -0,0 +1,52 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import org.eclipse.emf.ecore.resource.Resource;
+
+import com.mongodb.DBCallback;
+import com.mongodb.DBCollection;
+import com.mongodb.DefaultDBDecoder;
+
+/**
+ * A decoder that builds EMF objects while decoding the documents read from MongoDB. The
+ * decoding itself is done by DefaultDBDecoder; the objects are built by EObjectDBCallback.
+ *
+ * This class is not thread safe. Use the factory returned by EObjectBuilderImpl.getDBDecoderFactory()
+ * to create a decoder for each cursor.
+ *
+ * @author bhunt
+ */
+final class EObjectDBDecoder extends DefaultDBDecoder
+{
+	/**
+	 * @param builder the builder whose settings are used to build the EMF objects
+	 * @param resource the resource that will contain the EMF objects
+	 * @param isProxy true if the objects are to be built as proxies; false otherwise
+	 */
+	EObjectDBDecoder(EObjectBuilderImpl builder, Resource resource, boolean isProxy)
+	{
+		this.builder = builder;
+		this.resource = resource;
+		this.isProxy = isProxy;
+	}
+
+	@Override
+	public DBCallback getDBCallback(DBCollection collection)
+	{
+		return new EObjectDBCallback(builder, collection, resource, isProxy);
+	}
+
+	private final EObjectBuilderImpl builder;
+	private final Resource resource;
+	private final boolean isProxy;
+}
@@ -0,0 +1,65 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipselabs.mongoemf.EClassCache;
+
+/**
+ * Adapts a map of EClass URI to EClass, as taken by the deprecated builder constructor and
+ * factory function, to an EClassCache. The map is used as it was before EClassCache was
+ * introduced: lookups are synchronized on the map and entries are never invalidated.
+ * 
+ * @author bhunt
+ */
+class MapEClassCache implements EClassCache
+{
+	/**
+	 * @param eClasses the map of EClass URI to EClass
+	 */
+	MapEClassCache(Map<String, EClass> eClasses)
+	{
+		this.eClasses = eClasses;
+	}
+
+	@Override
+	public EClass getEClass(ResourceSet resourceSet, String eClassURI)
+	{
+		synchronized (eClasses)
+		{
+			EClass eClass = eClasses.get(eClassURI);
+
+			if (eClass == null)
+			{
+				eClass = (EClass) resourceSet.getEObject(URI.createURI(eClassURI), true);
+				eClasses.put(eClassURI, eClass);
+			}
+
+			return eClass;
+		}
+	}
+
+	@Override
+	public void clear()
+	{
+		synchronized (eClasses)
+		{
+			eClasses.clear();
+		}
+	}
+
+	private final Map<String, EClass> eClasses;
+}
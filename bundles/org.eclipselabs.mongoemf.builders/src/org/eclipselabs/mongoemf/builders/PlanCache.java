@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipselabs.mongoemf.ConverterService;
+
+/**
+ * A cache of the per EClass plans used by the builders. A cache is bound to a single
+ * converter service since the plans hold the converters chosen by that service. Plans
+ * are only cached for classes whose package is in the global package registry. Classes
+ * from dynamic packages get a fresh plan each time so that the cache neither holds on
+ * to them nor returns a plan for a class that has since been modified.
+ *
+ * This class is thread safe.
+ *
+ * @author bhunt
+ */
+final class PlanCache
+{
+	/**
+	 * @param converterService the service used to locate the converter for non-native attribute types
+	 */
+	PlanCache(ConverterService converterService)
+	{
+		this.converterService = converterService;
+	}
+
+	/**
+	 * @param eClass the class of the object being serialized
+	 * @return the serialization plan for the class
+	 */
+	WritePlan getWritePlan(EClass eClass)
+	{
+		WritePlan plan = writePlans.get(eClass);
+
+		if (plan == null)
+		{
+			plan = new WritePlan(eClass, converterService);
+
+			if (isRegistered(eClass))
+			{
+				WritePlan existingPlan = writePlans.putIfAbsent(eClass, plan);
+
+				if (existingPlan != null)
+					plan = existingPlan;
+			}
+		}
+
+		return plan;
+	}
+
+	/**
+	 * @param eClass the class of the object being deserialized
+	 * @return the deserialization plan for the class
+	 */
+	ReadPlan getReadPlan(EClass eClass)
+	{
+		ReadPlan plan = readPlans.get(eClass);
+
+		if (plan == null)
+		{
+			plan = new ReadPlan(eClass, converterService);
+
+			if (isRegistered(eClass))
+			{
+				ReadPlan existingPlan = readPlans.putIfAbsent(eClass, plan);
+
+				if (existingPlan != null)
+					plan = existingPlan;
+			}
+		}
+
+		return plan;
+	}
+
+	/**
+	 * @param eClass the class to check
+	 * @return true if the package of the class is the one registered in the global package registry; false otherwise
+	 */
+	static boolean isRegistered(EClass eClass)
+	{
+		EPackage ePackage = eClass.getEPackage();
+		return ePackage != null && ePackage.getNsURI() != null && EPackage.Registry.INSTANCE.getEPackage(ePackage.getNsURI()) == ePackage;
+	}
+
+	private final ConverterService converterService;
+	private final ConcurrentMap<EClass, WritePlan> writePlans = new ConcurrentHashMap<EClass, WritePlan>();
+	private final ConcurrentMap<EClass, ReadPlan> readPlans = new ConcurrentHashMap<EClass, ReadPlan>();
+}
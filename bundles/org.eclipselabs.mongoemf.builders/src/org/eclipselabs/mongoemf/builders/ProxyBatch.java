@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+
+import com.mongodb.DBCollection;
+
+/**
+ * The proxies built while building one object whose attribute values have yet to be
+ * fetched, grouped by the collection containing the referenced objects. This allows
+ * the attributes of all the proxies in a collection to be fetched with a single query.
+ * 
+ * This class is not thread safe and is confined to the thread building the object.
+ * 
+ * @author bhunt
+ */
+final class ProxyBatch
+{
+	/**
+	 * Records a proxy whose attributes must be fetched.
+	 * 
+	 * @param collection the collection containing the referenced object
+	 * @param id the id of the referenced object
+	 * @param proxy the proxy to set the attributes on
+	 */
+	void add(DBCollection collection, Object id, EObject proxy)
+	{
+		Target target = targets.get(collection.getFullName());
+
+		if (target == null)
+		{
+			target = new Target(collection);
+			targets.put(collection.getFullName(), target);
+		}
+
+		target.add(id, proxy);
+	}
+
+	/**
+	 * Records the proxies of another batch.
+	 *
+	 * @param batch the batch whose proxies must be fetched along with those of this batch
+	 */
+	void addAll(ProxyBatch batch)
+	{
+		for (Target target : batch.getTargets())
+		{
+			for (Entry<Object, List<EObject>> entry : target.proxies.entrySet())
+			{
+				for (EObject proxy : entry.getValue())
+					add(target.collection, entry.getKey(), proxy);
+			}
+		}
+	}
+
+	/**
+	 * @return the proxies grouped by collection
+	 */
+	Collection<Target> getTargets()
+	{
+		return targets.values();
+	}
+
+	/**
+	 * The proxies referencing objects in a single collection.
+	 */
+	static final class Target
+	{
+		Target(DBCollection collection)
+		{
+			this.collection = collection;
+		}
+
+		void add(Object id, EObject proxy)
+		{
+			List<EObject> idProxies = proxies.get(id);
+
+			if (idProxies == null)
+			{
+				idProxies = new ArrayList<EObject>(1);
+				proxies.put(id, idProxies);
+			}
+
+			idProxies.add(proxy);
+
+			EClass eClass = proxy.eClass();
+
+			if (eClasses.add(eClass))
+			{
+				for (EAttribute attribute : eClass.getEAllAttributes())
+				{
+					if (!attribute.isTransient() && !FeatureMapUtil.isFeatureMap(attribute))
+						attributeNames.add(attribute.getName());
+				}
+			}
+		}
+
+		final DBCollection collection;
+		final LinkedHashMap<Object, List<EObject>> proxies = new LinkedHashMap<Object, List<EObject>>();
+		final HashSet<String> attributeNames = new HashSet<String>();
+		private final HashSet<EClass> eClasses = new HashSet<EClass>();
+	}
+
+	private final LinkedHashMap<String, Target> targets = new LinkedHashMap<String, Target>();
+}
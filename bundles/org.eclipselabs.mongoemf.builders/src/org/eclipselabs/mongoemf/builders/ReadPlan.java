@@ -0,0 +1,192 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.HashMap;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * The deserialization plan for a single EClass. The plan maps each document key to the
+ * non-transient feature stored under that key along with the decoder for its values, so
+ * that EObjectBuilderImpl can walk the keys of a document once instead of probing the
+ * document for every feature of the class.
+ *
+ * This class is immutable and therefore thread safe.
+ *
+ * @author bhunt
+ */
+final class ReadPlan
+{
+	/**
+	 * @param eClass the class to build the plan for
+	 * @param converterService the service used to locate the converter for non-native attribute types
+	 */
+	ReadPlan(EClass eClass, ConverterService converterService)
+	{
+		for (EAttribute attribute : eClass.getEAllAttributes())
+		{
+			if (!attribute.isTransient())
+				features.put(attribute.getName(), new FeatureEntry(attribute, ValueDecoder.create(attribute.getEAttributeType(), converterService)));
+		}
+
+		for (EReference reference : eClass.getEAllReferences())
+		{
+			if (!reference.isTransient())
+				features.put(reference.getName(), new FeatureEntry(reference, null));
+		}
+	}
+
+	/**
+	 * @param key a key of the document being read
+	 * @return the entry for the feature stored under the key, or null if the key does not map to a feature
+	 */
+	FeatureEntry getFeature(String key)
+	{
+		return features.get(key);
+	}
+
+	/**
+	 * The precomputed deserialization details of a single feature.
+	 */
+	static final class FeatureEntry
+	{
+		FeatureEntry(EStructuralFeature feature, ValueDecoder decoder)
+		{
+			this.feature = feature;
+			this.isAttribute = feature instanceof EAttribute;
+			this.isFeatureMap = isAttribute && FeatureMapUtil.isFeatureMap(feature);
+			this.isMany = feature.isMany();
+			this.decoder = decoder;
+		}
+
+		final EStructuralFeature feature;
+		final boolean isAttribute;
+		final boolean isFeatureMap;
+		final boolean isMany;
+		final ValueDecoder decoder;
+	}
+
+	/**
+	 * Converts a value read from MongoDB into the value of an attribute. The decoder is chosen
+	 * once per attribute type: types not native to MongoDB are converted with the converter
+	 * service, byte, float, and short values are narrowed from the type MongoDB stores them as,
+	 * and all other native values are used as is.
+	 */
+	abstract static class ValueDecoder
+	{
+		/**
+		 * @param dbValue the value read from MongoDB
+		 * @return the EMF value
+		 */
+		abstract Object decode(Object dbValue);
+
+		/**
+		 * @return true if the decoder passes values through unchanged; false otherwise
+		 */
+		boolean isIdentity()
+		{
+			return this == IDENTITY;
+		}
+
+		/**
+		 * @param eDataType the attribute type
+		 * @param converterService the service used to locate the converter for non-native types
+		 * @return the decoder for values of the type
+		 */
+		static ValueDecoder create(EDataType eDataType, ConverterService converterService)
+		{
+			if (!MongoUtils.isNativeType(eDataType))
+				return new ConverterDecoder(eDataType, converterService.getConverter(eDataType));
+
+			// It is valid to use == for string comparison in this case.
+
+			String instanceClassName = eDataType.getInstanceClassName();
+
+			if (instanceClassName == "byte" || instanceClassName == "java.lang.Byte")
+				return BYTE;
+			else if (instanceClassName == "float" || instanceClassName == "java.lang.Float")
+				return FLOAT;
+			else if (instanceClassName == "short" || instanceClassName == "java.lang.Short")
+				return SHORT;
+
+			return IDENTITY;
+		}
+
+		static final ValueDecoder IDENTITY = new ValueDecoder()
+		{
+			@Override
+			Object decode(Object dbValue)
+			{
+				return dbValue;
+			}
+		};
+
+		static final ValueDecoder BYTE = new ValueDecoder()
+		{
+			@Override
+			Object decode(Object dbValue)
+			{
+				return dbValue == null ? null : ((Integer) dbValue).byteValue();
+			}
+		};
+
+		static final ValueDecoder FLOAT = new ValueDecoder()
+		{
+			@Override
+			Object decode(Object dbValue)
+			{
+				return dbValue == null ? null : ((Double) dbValue).floatValue();
+			}
+		};
+
+		static final ValueDecoder SHORT = new ValueDecoder()
+		{
+			@Override
+			Object decode(Object dbValue)
+			{
+				return dbValue == null ? null : ((Integer) dbValue).shortValue();
+			}
+		};
+	}
+
+	/**
+	 * Decodes values of a type that is not native to MongoDB using the converter bound to the type.
+	 */
+	private static final class ConverterDecoder extends ValueDecoder
+	{
+		ConverterDecoder(EDataType eDataType, ValueConverter converter)
+		{
+			this.eDataType = eDataType;
+			this.converter = converter;
+		}
+
+		@Override
+		Object decode(Object dbValue)
+		{
+			return converter.convertMongoDBValueToEMFValue(eDataType, dbValue);
+		}
+
+		private final EDataType eDataType;
+		private final ValueConverter converter;
+	}
+
+	private final HashMap<String, FeatureEntry> features = new HashMap<String, FeatureEntry>();
+}
@@ -0,0 +1,106 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.builders;
+
+import java.util.ArrayList;
+
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.ValueConverter;
+
+/**
+ * The serialization plan for a single EClass. The plan holds everything about the
+ * EClass that DBObjectBuilderImpl would otherwise recompute for every object it builds:
+ * the URI of the EClass, the non-transient attributes and references, their keys, whether
+ * their values are native to MongoDB, and the converter to use for values that are not.
+ *
+ * This class is immutable and therefore thread safe.
+ *
+ * @author bhunt
+ */
+final class WritePlan
+{
+	/**
+	 * @param eClass the class to build the plan for
+	 * @param converterService the service used to locate the converter for non-native attribute types
+	 */
+	WritePlan(EClass eClass, ConverterService converterService)
+	{
+		eClassURI = EcoreUtil.getURI(eClass).toString();
+
+		ArrayList<AttributeEntry> attributeEntries = new ArrayList<AttributeEntry>();
+
+		for (EAttribute attribute : eClass.getEAllAttributes())
+		{
+			if (!attribute.isTransient())
+				attributeEntries.add(new AttributeEntry(attribute, converterService));
+		}
+
+		attributes = attributeEntries.toArray(new AttributeEntry[attributeEntries.size()]);
+
+		ArrayList<EReference> referenceEntries = new ArrayList<EReference>();
+
+		for (EReference reference : eClass.getEAllReferences())
+		{
+			if (!reference.isTransient())
+				referenceEntries.add(reference);
+		}
+
+		references = referenceEntries.toArray(new EReference[referenceEntries.size()]);
+	}
+
+	/**
+	 * The precomputed serialization details of a single attribute.
+	 */
+	static final class AttributeEntry
+	{
+		AttributeEntry(EAttribute attribute, ConverterService converterService)
+		{
+			this.attribute = attribute;
+			this.key = attribute.getName();
+			this.eDataType = attribute.getEAttributeType();
+			this.isFeatureMap = FeatureMapUtil.isFeatureMap(attribute);
+			this.isMany = attribute.isMany();
+			this.isUnsettable = attribute.isUnsettable();
+			this.converter = isFeatureMap || MongoUtils.isNativeType(eDataType) ? null : converterService.getConverter(eDataType);
+		}
+
+		/**
+		 * Converts the EMF value into a MongoDB value using the converter bound to this attribute.
+		 *
+		 * @param emfValue the value
+		 * @return the converted value, or the value itself if the attribute type is native to MongoDB
+		 */
+		Object convert(Object emfValue)
+		{
+			return converter == null ? emfValue : converter.convertEMFValueToMongoDBValue(eDataType, emfValue);
+		}
+
+		final EAttribute attribute;
+		final String key;
+		final EDataType eDataType;
+		final boolean isFeatureMap;
+		final boolean isMany;
+		final boolean isUnsettable;
+		final ValueConverter converter;
+	}
+
+	final String eClassURI;
+	final AttributeEntry[] attributes;
+	final EReference[] references;
+}
@@ -14,21 +14,23 @@ package org.eclipselabs.mongoemf.handlers;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.resource.impl.URIHandlerImpl;
 import org.eclipselabs.emongo.MongoDatabaseProvider;
+import org.eclipselabs.mongoemf.DocumentCache;
 import org.eclipselabs.mongoemf.InputStreamFactory;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
-import org.eclipselabs.mongoemf.Options;
 import org.eclipselabs.mongoemf.OutputStreamFactory;
 
 import com.mongodb.BasicDBObject;
-import com.mongodb.DB;
 import com.mongodb.DBCollection;
-import com.mongodb.ReadPreference;
+import com.mongodb.DBObject;
 
 /**
  * This EMF URI handler interfaces to MongoDB. This URI handler can handle URIs with the "mongodb"
@@ -59,11 +61,24 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 	 * @param outputStreamFactory an instance of the output stream factory service
 	 */
 	public MongoURIHandlerImpl(Map<String, MongoDatabaseProvider> mongoDatabaseProviders, InputStreamFactory inputStreamFactory, OutputStreamFactory outputStreamFactory)
+	{
+		this(mongoDatabaseProviders, inputStreamFactory, outputStreamFactory, null);
+	}
+
+	/**
+	 * 
+	 * @param databaseLocator an instance of the mongo locator service
+	 * @param inputStreamFactory an instance of the input stream factory service
+	 * @param outputStreamFactory an instance of the output stream factory service
+	 * @param handlerProvider the provider holding the document cache to invalidate when an object is deleted, or null
+	 */
+	MongoURIHandlerImpl(Map<String, MongoDatabaseProvider> mongoDatabaseProviders, InputStreamFactory inputStreamFactory, OutputStreamFactory outputStreamFactory, MongoURIHandlerProvider handlerProvider)
 	{
 
 		this.mongoDatabaseProviders = mongoDatabaseProviders;
 		this.inputStreamFactory = inputStreamFactory;
 		this.outputStreamFactory = outputStreamFactory;
+		this.handlerProvider = handlerProvider;
 	}
 
 	@Override
@@ -95,7 +110,15 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 		// It is assumed that delete is called with the URI path /database/collection/id
 
 		DBCollection collection = getCollection(uri, options);
-		collection.findAndRemove(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri)));
+		Object id = MongoUtils.getID(uri);
+		collection.findAndRemove(new BasicDBObject(Keywords.ID_KEY, id));
+
+		// The document cache is looked up on each delete since it may be bound after this handler was created.
+
+		DocumentCache documentCache = handlerProvider != null ? handlerProvider.getDocumentCache() : null;
+
+		if (documentCache != null)
+			documentCache.invalidate(collection, id);
 	}
 
 	@Override
@@ -115,6 +138,36 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 		}
 	}
 
+	@Override
+	public Map<String, ?> getAttributes(URI uri, Map<?, ?> options)
+	{
+		HashMap<String, Object> attributes = new HashMap<String, Object>();
+
+		if (uri.query() != null)
+			return attributes;
+
+		// Only the time stamp is read from MongoDB so that a client can check whether a document has
+		// changed without transferring it.
+
+		Set<String> requestedAttributes = getRequestedAttributes(options);
+
+		if (requestedAttributes == null || requestedAttributes.contains(URIConverter.ATTRIBUTE_TIME_STAMP))
+		{
+			try
+			{
+				DBCollection collection = getCollection(uri, options);
+				DBObject dbObject = collection.findOne(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri)), new BasicDBObject(Keywords.TIME_STAMP_KEY, 1));
+
+				if (dbObject != null && dbObject.get(Keywords.TIME_STAMP_KEY) instanceof Number)
+					attributes.put(URIConverter.ATTRIBUTE_TIME_STAMP, ((Number) dbObject.get(Keywords.TIME_STAMP_KEY)).longValue());
+			}
+			catch (Throwable exception)
+			{}
+		}
+
+		return attributes;
+	}
+
 	/**
 	 * This function locates the MongoDB collection instance corresponding to the collection
 	 * identifier extracted from the URI. The URI path must have exactly 3 segments and be of the form
@@ -127,33 +180,11 @@ public class MongoURIHandlerImpl extends URIHandlerImpl
 	 */
 	private DBCollection getCollection(URI uri, Map<?, ?> options) throws IOException
 	{
-		// We assume that the URI path has the form /database/collection/{id} making the
-		// collection segment # 1.
-
-		if (uri.segmentCount() != 3)
-			throw new IOException("The URI is not of the form 'mongodb:/database/collection/{id}");
-
-		MongoDatabaseProvider mongoDatabaseProvider = mongoDatabaseProviders.get(uri.trimQuery().trimSegments(2).toString());
-
-		if (mongoDatabaseProvider == null)
-			throw new IOException("Database is not available");
-
-		DB database = mongoDatabaseProvider.getDB();
-
-		if (database == null)
-			throw new IOException("Database is not available");
-
-		DBCollection dbCollection = database.getCollection(uri.segment(1));
-
-		ReadPreference readPreference = (ReadPreference) options.get(Options.OPTION_READ_PREFERENCE);
-
-		if (readPreference != null)
-			dbCollection.setReadPreference(readPreference);
-
-		return dbCollection;
+		return MongoUtils.getCollection(mongoDatabaseProviders, uri, options);
 	}
 
 	private Map<String, MongoDatabaseProvider> mongoDatabaseProviders;
 	private InputStreamFactory inputStreamFactory;
 	private OutputStreamFactory outputStreamFactory;
+	private MongoURIHandlerProvider handlerProvider;
 }
@@ -17,6 +17,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import org.eclipse.emf.ecore.resource.URIHandler;
 import org.eclipselabs.emodeling.UriHandlerProvider;
 import org.eclipselabs.emongo.MongoDatabaseProvider;
+import org.eclipselabs.mongoemf.DocumentCache;
 import org.eclipselabs.mongoemf.InputStreamFactory;
 import org.eclipselabs.mongoemf.OutputStreamFactory;
 
@@ -30,7 +31,7 @@ public class MongoURIHandlerProvider implements UriHandlerProvider
 	public synchronized URIHandler getURIHandler()
 	{
 		if (uriHandler == null)
-			uriHandler = new MongoURIHandlerImpl(mongoDatabaseProviders, inputStreamFactory, outputStreamFactory);
+			uriHandler = new MongoURIHandlerImpl(mongoDatabaseProviders, inputStreamFactory, outputStreamFactory, this);
 
 		return uriHandler;
 	}
@@ -55,8 +56,25 @@ public class MongoURIHandlerProvider implements UriHandlerProvider
 		this.outputStreamFactory = outputStreamFactory;
 	}
 
+	public void bindDocumentCache(DocumentCache documentCache)
+	{
+		this.documentCache = documentCache;
+	}
+
+	public void unbindDocumentCache(DocumentCache documentCache)
+	{
+		if (this.documentCache == documentCache)
+			this.documentCache = null;
+	}
+
+	DocumentCache getDocumentCache()
+	{
+		return documentCache;
+	}
+
 	private MongoURIHandlerImpl uriHandler;
 	private Map<String, MongoDatabaseProvider> mongoDatabaseProviders = new ConcurrentHashMap<String, MongoDatabaseProvider>();
 	private InputStreamFactory inputStreamFactory;
 	private OutputStreamFactory outputStreamFactory;
+	private volatile DocumentCache documentCache;
 }
@@ -12,7 +12,8 @@
 package org.eclipselabs.mongoemf.query.mongodb;
 
 import org.eclipse.emf.common.util.URI;
-import org.eclipselabs.mongoemf.QueryEngine;
+import org.eclipselabs.mongoemf.CachingQueryEngine;
+import org.eclipselabs.mongoemf.QueryCache;
 import org.eclipselabs.mongoemf.model.ModelFactory;
 import org.eclipselabs.mongoemf.model.MongoQuery;
 
@@ -20,22 +21,63 @@ import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
 
 /**
+ * Builds queries from a JSON document with the fields of a MongoQuery. A value of the filter may
+ * be a parameter written as { "$param" : "name" }; the value bound to the parameter through
+ * Options.OPTION_QUERY_PARAMETERS is used when the query is run. The queries built are kept in a
+ * QueryCache.
+ * 
  * @author bhunt
  * 
  */
-public class NativeQueryEngine implements QueryEngine
+public class NativeQueryEngine implements CachingQueryEngine
 {
 	@Override
 	public MongoQuery buildDBObjectQuery(URI uri)
 	{
-		DBObject query = (DBObject) JSON.parse(URI.decode(uri.query()));
+		String queryString = URI.decode(uri.query());
+		MongoQuery mongoQuery = queryCache.get(queryString);
+
+		if (mongoQuery != null)
+			return mongoQuery;
 
-		MongoQuery mongoQuery = ModelFactory.eINSTANCE.createMongoQuery();
+		DBObject query = (DBObject) JSON.parse(queryString);
+
+		mongoQuery = ModelFactory.eINSTANCE.createMongoQuery();
 		mongoQuery.setFilter((DBObject) query.get("filter"));
 		mongoQuery.setProjection((DBObject) query.get("projection"));
 		mongoQuery.setSort((DBObject) query.get("sort"));
-		mongoQuery.setLimit((Integer) query.get("limit"));
+		mongoQuery.setSkip(getInteger(query, "skip"));
+		mongoQuery.setLimit(getInteger(query, "limit"));
+		mongoQuery.setBatchSize(getInteger(query, "batchSize"));
+		mongoQuery.setMaxScan(getInteger(query, "maxScan"));
+		mongoQuery.setHint((DBObject) query.get("hint"));
+		mongoQuery.setNoCursorTimeout((Boolean) query.get("noCursorTimeout"));
+
+		Number maxTimeMS = (Number) query.get("maxTimeMS");
 
+		if (maxTimeMS != null)
+			mongoQuery.setMaxTimeMS(maxTimeMS.longValue());
+
+		queryCache.put(queryString, mongoQuery);
 		return mongoQuery;
 	}
+
+	@Override
+	public QueryCache getQueryCache()
+	{
+		return queryCache;
+	}
+
+	/**
+	 * @param query the parsed query
+	 * @param key the key of a numeric field
+	 * @return the value of the field as an Integer, or null if the field is not set
+	 */
+	private static Integer getInteger(DBObject query, String key)
+	{
+		Number value = (Number) query.get(key);
+		return value != null ? value.intValue() : null;
+	}
+
+	private final QueryCache queryCache = new QueryCache();
 }
@@ -12,7 +12,11 @@
 package org.eclipselabs.mongoemf.query.simple;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.URI;
@@ -21,8 +25,9 @@ import org.eclipselabs.emodeling.query.Expression;
 import org.eclipselabs.emodeling.query.Literal;
 import org.eclipselabs.emodeling.query.util.ExpressionBuilder;
 import org.eclipselabs.emodeling.query.util.QuerySwitch;
+import org.eclipselabs.mongoemf.CachingQueryEngine;
 import org.eclipselabs.mongoemf.Keywords;
-import org.eclipselabs.mongoemf.QueryEngine;
+import org.eclipselabs.mongoemf.QueryCache;
 import org.eclipselabs.mongoemf.model.ModelFactory;
 import org.eclipselabs.mongoemf.model.MongoQuery;
 
@@ -31,20 +36,559 @@ import com.mongodb.DBObject;
 import com.mongodb.QueryOperators;
 
 /**
+ * Builds queries from a filter expression optionally followed by clauses that control how the
+ * query is run. Each clause is a keyword followed by its value, if any:
+ * 
+ * name == 'x' batchSize 100 maxTimeMS 5000 maxScan 10000 hint name, age desc noCursorTimeout
+ * 
+ * name == 'x' select name, age orderBy age desc, name offset 40 limit 20
+ * 
+ * The select clause lists the features read into the objects of the result; the other features
+ * are left unset. The orderBy, offset and limit clauses sort and page the result on the server.
+ * 
+ * A clause keyword is only recognized as a whole word outside of quoted literals, where the filter
+ * expression or the value of the previous clause can end, and when it is not followed by a
+ * comparison or logical operator, so features with the same name as a keyword can still be used
+ * in the filter expression and in the values of the clauses.
+ * 
+ * A value of the filter expression may be a parameter written as :name, as in
+ * name == :name && count > :min. The value bound to the parameter through
+ * Options.OPTION_QUERY_PARAMETERS is used when the query is run.
+ * 
+ * Equalities on the same field joined by || are folded into a single $in condition, and range
+ * conditions on the same field joined by && are merged into a single range, so that the query
+ * can be run with one index bound.
+ * 
+ * The queries built are kept in a QueryCache.
+ * 
  * @author merks
  * 
  */
-public class SimpleQueryEngine implements QueryEngine
+public class SimpleQueryEngine implements CachingQueryEngine
 {
 
 	@Override
 	public MongoQuery buildDBObjectQuery(URI uri)
 	{
-		MongoQuery mongoQuery = ModelFactory.eINSTANCE.createMongoQuery();
-		mongoQuery.setFilter(buildDBObjectQuery(new ExpressionBuilder(URI.decode(uri.query())).parseExpression()));
+		String query = URI.decode(uri.query());
+		MongoQuery mongoQuery = queryCache.get(query);
+
+		if (mongoQuery != null)
+			return mongoQuery;
+
+		mongoQuery = ModelFactory.eINSTANCE.createMongoQuery();
+		LinkedHashMap<String, String> clauses = new LinkedHashMap<String, String>();
+		String expression = markParameters(splitClauses(query, clauses));
+		mongoQuery.setFilter(foldDisjunctions(buildDBObjectQuery(new ExpressionBuilder(expression).parseExpression())));
+		buildClauses(mongoQuery, clauses);
+		queryCache.put(query, mongoQuery);
 		return mongoQuery;
 	}
 
+	@Override
+	public QueryCache getQueryCache()
+	{
+		return queryCache;
+	}
+
+	/**
+	 * Splits the clauses following the filter expression off the query.
+	 * 
+	 * @param query the query
+	 * @param clauses receives the value of each clause keyed by its keyword
+	 * @return the filter expression
+	 */
+	static String splitClauses(String query, Map<String, String> clauses)
+	{
+		int expressionEnd = query.length();
+		String keyword = null;
+		int valueStart = 0;
+		char quote = 0;
+
+		for (int i = 0; i < query.length(); i++)
+		{
+			char c = query.charAt(i);
+
+			if (quote != 0)
+			{
+				if (c == '\\')
+					i++;
+				else if (c == quote)
+					quote = 0;
+
+				continue;
+			}
+
+			if (c == '\'' || c == '"')
+			{
+				quote = c;
+				continue;
+			}
+
+			if (i > 0 && !Character.isWhitespace(query.charAt(i - 1)))
+				continue;
+
+			String clauseKeyword = getClauseKeyword(query, i);
+
+			if (clauseKeyword == null || !isClauseBoundary(query, i, keyword, valueStart))
+				continue;
+
+			if (keyword == null)
+				expressionEnd = i;
+			else
+				clauses.put(keyword, query.substring(valueStart, i).trim());
+
+			keyword = clauseKeyword;
+			valueStart = i + clauseKeyword.length();
+			i = valueStart - 1;
+		}
+
+		if (keyword != null)
+			clauses.put(keyword, query.substring(valueStart).trim());
+
+		return query.substring(0, expressionEnd).trim();
+	}
+
+	/**
+	 * Replaces each parameter of the filter expression with a string literal holding the parameter
+	 * name behind a prefix that is not expected in a literal of a query, so the expression parser
+	 * accepts it. A parameter is a colon outside of quoted literals that follows white space, an
+	 * operator or an opening parenthesis, and is followed by the parameter name.
+	 * 
+	 * @param expression the filter expression
+	 * @return the filter expression with the parameters replaced by literals
+	 */
+	static String markParameters(String expression)
+	{
+		StringBuilder result = null;
+		int copied = 0;
+		char quote = 0;
+
+		for (int i = 0; i < expression.length(); i++)
+		{
+			char c = expression.charAt(i);
+
+			if (quote != 0)
+			{
+				if (c == '\\')
+					i++;
+				else if (c == quote)
+					quote = 0;
+
+				continue;
+			}
+
+			if (c == '\'' || c == '"')
+			{
+				quote = c;
+				continue;
+			}
+
+			if (c != ':' || (i > 0 && !Character.isWhitespace(expression.charAt(i - 1)) && "=!<>&|(".indexOf(expression.charAt(i - 1)) == -1))
+				continue;
+
+			int end = i + 1;
+
+			while (end < expression.length() && Character.isJavaIdentifierPart(expression.charAt(end)))
+				end++;
+
+			if (end == i + 1 || !Character.isJavaIdentifierStart(expression.charAt(i + 1)))
+				continue;
+
+			if (result == null)
+				result = new StringBuilder(expression.length() + 16);
+
+			result.append(expression, copied, i).append('\'').append(PARAMETER_PREFIX).append(expression, i + 1, end).append('\'');
+			copied = end;
+			i = end - 1;
+		}
+
+		if (result == null)
+			return expression;
+
+		return result.append(expression, copied, expression.length()).toString();
+	}
+
+	/**
+	 * @param literal a literal of the filter expression
+	 * @return the name of the parameter the literal stands for, or null if it is not a parameter
+	 */
+	private static String getParameterName(Literal literal)
+	{
+		String literalValue = literal.getLiteralValue();
+		return literalValue != null && literalValue.startsWith(PARAMETER_PREFIX) ? literalValue.substring(PARAMETER_PREFIX.length()) : null;
+	}
+
+	/**
+	 * @param query the query
+	 * @param index the index of the first character of a word in the query
+	 * @return the clause keyword starting at the index, or null if the word is not a clause keyword
+	 */
+	private static String getClauseKeyword(String query, int index)
+	{
+		for (String keyword : CLAUSE_KEYWORDS)
+		{
+			int end = index + keyword.length();
+
+			if (!query.startsWith(keyword, index) || (end < query.length() && !Character.isWhitespace(query.charAt(end))))
+				continue;
+
+			while (end < query.length() && Character.isWhitespace(query.charAt(end)))
+				end++;
+
+			if (end == query.length() || "=!<>&|".indexOf(query.charAt(end)) == -1)
+				return keyword;
+		}
+
+		return null;
+	}
+
+	/**
+	 * A keyword only starts a clause where the filter expression or the value of the previous clause
+	 * could end. It does not start one after an operator, an opening parenthesis or a comma, which
+	 * are followed by an operand or the next item of a list, nor in place of the value of a
+	 * previous clause that requires one.
+	 * 
+	 * @param query the query
+	 * @param index the index of the keyword in the query
+	 * @param keyword the keyword of the previous clause, or null if there is none
+	 * @param valueStart the index of the value of the previous clause
+	 * @return true if the keyword at the index starts a clause
+	 */
+	private static boolean isClauseBoundary(String query, int index, String keyword, int valueStart)
+	{
+		if (keyword != null && !"noCursorTimeout".equals(keyword) && query.substring(valueStart, index).trim().isEmpty())
+			return false;
+
+		int previous = index - 1;
+
+		while (previous >= 0 && Character.isWhitespace(query.charAt(previous)))
+			previous--;
+
+		return previous < 0 || "=!<>&|(,".indexOf(query.charAt(previous)) == -1;
+	}
+
+	/**
+	 * @param keyword the keyword of the clause
+	 * @param value the value of the clause
+	 * @return the value as an Integer
+	 * @throws IllegalArgumentException if the value is not an integer
+	 */
+	private static Integer parseInteger(String keyword, String value)
+	{
+		try
+		{
+			return Integer.valueOf(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid value '" + value + "' of the " + keyword + " clause, expected an integer", e);
+		}
+	}
+
+	/**
+	 * @param keyword the keyword of the clause
+	 * @param value the value of the clause
+	 * @return the value as a Long
+	 * @throws IllegalArgumentException if the value is not an integer
+	 */
+	private static Long parseLong(String keyword, String value)
+	{
+		try
+		{
+			return Long.valueOf(value);
+		}
+		catch (NumberFormatException e)
+		{
+			throw new IllegalArgumentException("Invalid value '" + value + "' of the " + keyword + " clause, expected an integer", e);
+		}
+	}
+
+	/**
+	 * @param mongoQuery the query to set the clauses on
+	 * @param clauses the values of the clauses keyed by their keyword
+	 */
+	private static void buildClauses(MongoQuery mongoQuery, Map<String, String> clauses)
+	{
+		String value = clauses.get("batchSize");
+
+		if (value != null)
+			mongoQuery.setBatchSize(parseInteger("batchSize", value));
+
+		value = clauses.get("maxTimeMS");
+
+		if (value != null)
+			mongoQuery.setMaxTimeMS(parseLong("maxTimeMS", value));
+
+		value = clauses.get("maxScan");
+
+		if (value != null)
+			mongoQuery.setMaxScan(parseInteger("maxScan", value));
+
+		value = clauses.get("hint");
+
+		if (value != null)
+			mongoQuery.setHint(buildKeys(value));
+
+		value = clauses.get("noCursorTimeout");
+
+		if (value != null)
+			mongoQuery.setNoCursorTimeout(value.isEmpty() || Boolean.parseBoolean(value));
+
+		value = clauses.get("select");
+
+		if (value != null)
+			mongoQuery.setProjection(buildProjection(value));
+
+		value = clauses.get("orderBy");
+
+		if (value != null)
+			mongoQuery.setSort(buildKeys(value));
+
+		value = clauses.get("offset");
+
+		if (value != null)
+			mongoQuery.setSkip(parseInteger("offset", value));
+
+		value = clauses.get("limit");
+
+		if (value != null)
+			mongoQuery.setLimit(parseInteger("limit", value));
+	}
+
+	/**
+	 * @param keys a comma separated list of fields, each optionally followed by asc or desc
+	 * @return the key pattern with 1 for ascending and -1 for descending fields
+	 */
+	static DBObject buildKeys(String keys)
+	{
+		DBObject dbObject = new BasicDBObject();
+
+		for (String key : keys.split(","))
+		{
+			String[] parts = key.trim().split("\\s+");
+
+			if (parts.length > 2 || parts[0].isEmpty() || (parts.length == 2 && !"asc".equalsIgnoreCase(parts[1]) && !"desc".equalsIgnoreCase(parts[1])))
+				throw new IllegalArgumentException("Invalid key '" + key.trim() + "'");
+
+			dbObject.put(parts[0], parts.length == 2 && "desc".equalsIgnoreCase(parts[1]) ? -1 : 1);
+		}
+
+		return dbObject;
+	}
+
+	/**
+	 * @param fields a comma separated list of fields
+	 * @return the projection including the fields along with the fields needed to build the objects
+	 */
+	static DBObject buildProjection(String fields)
+	{
+		DBObject dbObject = new BasicDBObject();
+
+		for (String field : fields.split(","))
+		{
+			String trimmedField = field.trim();
+
+			if (trimmedField.isEmpty() || trimmedField.split("\\s+").length > 1)
+				throw new IllegalArgumentException("Invalid field '" + trimmedField + "'");
+
+			dbObject.put(trimmedField, 1);
+		}
+
+		dbObject.put(Keywords.ECLASS_KEY, 1);
+		dbObject.put(Keywords.TIME_STAMP_KEY, 1);
+		return dbObject;
+	}
+
+	/**
+	 * Folds the equalities on the same field of each $or of the query into a single $in condition.
+	 * The other alternatives of the $or are kept in order after the folded conditions.
+	 * 
+	 * @param dbObject the query
+	 * @return the query with its disjunctions folded
+	 */
+	static DBObject foldDisjunctions(DBObject dbObject)
+	{
+		Object or = dbObject.get("$or");
+
+		if (!(or instanceof List<?>))
+			return dbObject;
+
+		List<Object> alternatives = new ArrayList<Object>();
+		LinkedHashMap<String, List<Object>> valuesByField = new LinkedHashMap<String, List<Object>>();
+
+		for (Object alternative : (List<?>) or)
+		{
+			if (!(alternative instanceof DBObject))
+			{
+				alternatives.add(alternative);
+				continue;
+			}
+
+			DBObject alternativeDBObject = foldDisjunctions((DBObject) alternative);
+			List<?> values = null;
+			String field = null;
+
+			if (alternativeDBObject.keySet().size() == 1)
+			{
+				field = alternativeDBObject.keySet().iterator().next();
+				values = field.startsWith("$") ? null : getEqualityValues(alternativeDBObject.get(field));
+			}
+
+			if (values == null)
+			{
+				alternatives.add(alternativeDBObject);
+				continue;
+			}
+
+			List<Object> in = valuesByField.get(field);
+
+			if (in == null)
+			{
+				in = new ArrayList<Object>();
+				valuesByField.put(field, in);
+			}
+
+			for (Object value : values)
+			{
+				if (!in.contains(value))
+					in.add(value);
+			}
+		}
+
+		List<Object> folded = new ArrayList<Object>(valuesByField.size() + alternatives.size());
+
+		for (Map.Entry<String, List<Object>> entry : valuesByField.entrySet())
+		{
+			List<Object> in = entry.getValue();
+			folded.add(new BasicDBObject(entry.getKey(), in.size() == 1 ? in.get(0) : new BasicDBObject("$in", in)));
+		}
+
+		folded.addAll(alternatives);
+
+		if (folded.size() == 1 && folded.get(0) instanceof DBObject && dbObject.keySet().size() == 1)
+			return (DBObject) folded.get(0);
+
+		dbObject.put("$or", folded);
+		return dbObject;
+	}
+
+	/**
+	 * @param value the value of a field of a query
+	 * @return the values the field is compared to if the value is an equality or an $in condition,
+	 *         or null otherwise
+	 */
+	private static List<?> getEqualityValues(Object value)
+	{
+		if (value instanceof List<?>)
+			return null;
+
+		if (value instanceof DBObject && !isParameter(value))
+		{
+			DBObject dbObject = (DBObject) value;
+			Object in = dbObject.get("$in");
+			return dbObject.keySet().size() == 1 && in instanceof List<?> ? (List<?>) in : null;
+		}
+
+		return Collections.singletonList(value);
+	}
+
+	/**
+	 * Merges the conditions on a field of the right operand of && into the conditions on the same
+	 * field of the left operand. Of two lower or two upper bounds of a range, the tighter bound is
+	 * kept. A condition that cannot be merged, because its operator is already used by the left
+	 * conditions and the values cannot be compared, is returned so that it can be required
+	 * separately.
+	 * 
+	 * @param leftDBObject the conditions of the left operand, which receive the merged conditions
+	 * @param rightDBObject the conditions of the right operand
+	 * @return the conditions that could not be merged, or null if all conditions were merged
+	 */
+	static DBObject mergeConditions(DBObject leftDBObject, DBObject rightDBObject)
+	{
+		DBObject unmerged = null;
+
+		for (String operator : rightDBObject.keySet())
+		{
+			Object value = rightDBObject.get(operator);
+			boolean lower = QueryOperators.GT.equals(operator) || QueryOperators.GTE.equals(operator);
+			boolean upper = QueryOperators.LT.equals(operator) || QueryOperators.LTE.equals(operator);
+			String bound = null;
+
+			if (lower)
+				bound = leftDBObject.containsField(QueryOperators.GT) ? QueryOperators.GT : leftDBObject.containsField(QueryOperators.GTE) ? QueryOperators.GTE : null;
+			else if (upper)
+				bound = leftDBObject.containsField(QueryOperators.LT) ? QueryOperators.LT : leftDBObject.containsField(QueryOperators.LTE) ? QueryOperators.LTE : null;
+			else if (leftDBObject.containsField(operator))
+				bound = operator;
+
+			if (bound == null)
+			{
+				leftDBObject.put(operator, value);
+				continue;
+			}
+
+			Integer comparison = lower || upper ? compareBounds(value, leftDBObject.get(bound)) : null;
+
+			if (comparison == null)
+			{
+				if (bound.equals(operator))
+				{
+					if (unmerged == null)
+						unmerged = new BasicDBObject();
+
+					unmerged.put(operator, value);
+				}
+				else
+					leftDBObject.put(operator, value);
+			}
+			else if (comparison == 0 ? QueryOperators.GT.equals(operator) || QueryOperators.LT.equals(operator) : (comparison > 0) == lower)
+			{
+				leftDBObject.removeField(bound);
+				leftDBObject.put(operator, value);
+			}
+		}
+
+		return unmerged;
+	}
+
+	/**
+	 * @param value the value of a range bound
+	 * @param bound the value of another bound on the same side of the range
+	 * @return the comparison of the values, or null if they are not both numbers or both dates
+	 */
+	private static Integer compareBounds(Object value, Object bound)
+	{
+		if (value instanceof Date && bound instanceof Date)
+			return ((Date) value).compareTo((Date) bound);
+
+		if (!(value instanceof Number) || !(bound instanceof Number))
+			return null;
+
+		if (isIntegral(value) && isIntegral(bound))
+		{
+			long left = ((Number) value).longValue();
+			long right = ((Number) bound).longValue();
+			return left < right ? -1 : left == right ? 0 : 1;
+		}
+
+		return Double.compare(((Number) value).doubleValue(), ((Number) bound).doubleValue());
+	}
+
+	private static boolean isIntegral(Object value)
+	{
+		return value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte;
+	}
+
+	/**
+	 * @param value the value of a field of a query
+	 * @return true if the value is a parameter placeholder
+	 */
+	private static boolean isParameter(Object value)
+	{
+		return value instanceof DBObject && ((DBObject) value).containsField(Keywords.PARAMETER_KEY) && ((DBObject) value).keySet().size() == 1;
+	}
+
 	private DBObject buildDBObjectQuery(Expression expression)
 	{
 		final DBObject dbObject = new BasicDBObject();
@@ -55,6 +599,11 @@ public class SimpleQueryEngine implements QueryEngine
 			{
 				Object getValue(Literal literal)
 				{
+					String parameterName = getParameterName(literal);
+
+					if (parameterName != null)
+						return new BasicDBObject(Keywords.PARAMETER_KEY, parameterName);
+
 					return literal.getValue() == null ? literal.getLiteralValue() : literal.getValue();
 				}
 
@@ -69,7 +618,11 @@ public class SimpleQueryEngine implements QueryEngine
 						Expression rightOperand = binaryOperation.getRightOperand();
 						String property = ExpressionBuilder.toString(leftOperand);
 
-						if (Keywords.ID_KEY.equals(property))
+						if (Keywords.ID_KEY.equals(property) && rightOperand instanceof Literal && getParameterName((Literal) rightOperand) != null)
+						{
+							dbObject.put(property, getValue((Literal) rightOperand));
+						}
+						else if (Keywords.ID_KEY.equals(property))
 						{
 							dbObject.put(property, new ObjectId(((Literal) rightOperand).getLiteralValue()));
 						}
@@ -152,10 +705,10 @@ public class SimpleQueryEngine implements QueryEngine
 						{
 							Object rightValue = rightObject.get(field);
 							Object leftValue = dbObject.get(field);
-							if (leftValue instanceof DBObject)
+							if (leftValue instanceof DBObject && !isParameter(leftValue))
 							{
 								DBObject leftDBObject = (DBObject) leftValue;
-								if (rightValue instanceof DBObject)
+								if (rightValue instanceof DBObject && !isParameter(rightValue))
 								{
 									DBObject rightDBObject = (DBObject) rightValue;
 									if (leftDBObject.containsField("$nin") && rightDBObject.containsField("$ne"))
@@ -175,7 +728,21 @@ public class SimpleQueryEngine implements QueryEngine
 									}
 									else
 									{
-										leftDBObject.putAll(rightDBObject);
+										DBObject unmerged = mergeConditions(leftDBObject, rightDBObject);
+
+										if (unmerged != null)
+										{
+											@SuppressWarnings("unchecked")
+											List<Object> and = (List<Object>) dbObject.get("$and");
+
+											if (and == null)
+											{
+												and = new ArrayList<Object>();
+												dbObject.put("$and", and);
+											}
+
+											and.add(new BasicDBObject(field, unmerged));
+										}
 									}
 								}
 								else
@@ -238,4 +805,10 @@ public class SimpleQueryEngine implements QueryEngine
 
 		return dbObject;
 	}
+
+	private static final String[] CLAUSE_KEYWORDS = { "batchSize", "maxTimeMS", "maxScan", "hint", "noCursorTimeout", "select", "orderBy", "offset", "limit" };
+
+	private static final String PARAMETER_PREFIX = "\u0000:";
+
+	private final QueryCache queryCache = new QueryCache();
 }
@@ -0,0 +1,313 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bson.types.ObjectId;
+import org.eclipse.emf.ecore.EAttribute;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipselabs.mongoemf.BulkWriter;
+import org.eclipselabs.mongoemf.DBObjectBuilder;
+import org.eclipselabs.mongoemf.DirectDBObjectBuilder;
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBEncoder;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import com.mongodb.WriteConcern;
+
+/**
+ * Builds EMF objects into DBObjects and writes them in batches to a collection on a background thread so that the next batch
+ * can be built while the previous one is being written. At most one batch is written at a
+ * time: write() waits for the previous batch before handing over the next one, so no more
+ * than two batches are held in memory at once. Nothing is built while the last batch is
+ * written, so it is written on the calling thread, and the background thread is only started
+ * when the objects are split over several batches.
+ *
+ * Batches are either inserted, or upserted one object at a time by id. An unordered write
+ * carries on with the remaining objects of a batch when one of them fails, and the first
+ * failure is reported once the batch has been written.
+ *
+ * The ids of the objects are assigned before they are written. The optional listener is
+ * notified on the calling thread as each batch has been written.
+ *
+ * This class is not thread safe.
+ *
+ * @author bhunt
+ */
+final class BatchWriter
+{
+	/**
+	 * @param collection the collection to write to
+	 * @param writeConcern the write concern to use, or null to use the write concern of the collection
+	 * @param encoder the encoder to use, or null to use the default encoder - the objects are built as deferred objects if it is set
+	 * @param ordered true to stop writing a batch at the first failure; false to carry on with the remaining objects
+	 * @param upsert true to upsert each object by id; false to insert the batch
+	 */
+	BatchWriter(DBCollection collection, WriteConcern writeConcern, DBEncoder encoder, boolean ordered, boolean upsert)
+	{
+		if (writeConcern == null)
+			writeConcern = collection.getWriteConcern();
+
+		this.collection = collection;
+		this.writeConcern = ordered ? writeConcern : writeConcern.continueOnErrorForInsert(true);
+		this.encoder = encoder;
+		this.ordered = ordered;
+		this.upsert = upsert;
+	}
+
+	/**
+	 * Builds and writes the objects, taking them from the iterator one batch at a time. The
+	 * background thread is stopped once the objects have been written.
+	 *
+	 * @param eObjects the objects to write
+	 * @param builder the builder of the DBObjects - it must be a DirectDBObjectBuilder if an encoder is set
+	 * @param batchSize the maximum number of objects in a batch
+	 * @param timeStamp the time stamp to store with each object
+	 * @param useIdAttributeAsPrimaryKey true to use the id attribute of an object as the id of its document
+	 * @param listener the listener to notify as each batch has been written, or null
+	 * @return the number of objects written
+	 * @throws IOException if a batch could not be written
+	 */
+	long write(Iterator<? extends EObject> eObjects, DBObjectBuilder builder, int batchSize, long timeStamp, boolean useIdAttributeAsPrimaryKey, final BulkWriter.Listener listener) throws IOException
+	{
+		long count = 0;
+
+		try
+		{
+			// The next batch is built while the previous batch is being written, and is not handed
+			// over until the previous batch has been written.
+
+			while (eObjects.hasNext())
+			{
+				ArrayList<DBObject> dbObjects = new ArrayList<DBObject>(batchSize);
+				final ArrayList<EObject> batch = new ArrayList<EObject>(batchSize);
+
+				while (batch.size() < batchSize && eObjects.hasNext())
+				{
+					EObject eObject = eObjects.next();
+					DBObject dbObject = encoder != null ? ((DirectDBObjectBuilder) builder).buildDeferredDBObject(eObject) : builder.buildDBObject(eObject);
+					dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
+
+					if (useIdAttributeAsPrimaryKey)
+					{
+						EAttribute idAttribute = eObject.eClass().getEIDAttribute();
+
+						if (idAttribute != null)
+							dbObject.put(Keywords.ID_KEY, eObject.eGet(idAttribute));
+					}
+
+					dbObjects.add(dbObject);
+					batch.add(eObject);
+				}
+
+				final Object[] ids = new Object[dbObjects.size()];
+
+				for (int i = 0; i < ids.length; i++)
+					ids[i] = ensureId(dbObjects.get(i));
+
+				write(dbObjects, listener == null ? null : new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						listener.batchWritten(Collections.unmodifiableList(batch), Collections.unmodifiableList(Arrays.asList(ids)));
+					}
+				}, !eObjects.hasNext());
+
+				count += ids.length;
+			}
+		}
+		finally
+		{
+			close();
+		}
+
+		return count;
+	}
+
+	/**
+	 * Assigns an id to the DBObject if it does not have one as the driver would on insert.
+	 *
+	 * @param dbObject the object to be written
+	 * @return the id of the object
+	 */
+	private static Object ensureId(DBObject dbObject)
+	{
+		Object id = dbObject.get(Keywords.ID_KEY);
+
+		if (id == null)
+		{
+			id = new ObjectId();
+			dbObject.put(Keywords.ID_KEY, id);
+		}
+
+		return id;
+	}
+
+	/**
+	 * Waits for the previous batch to be written and starts writing the batch. The last batch is
+	 * written before this function returns.
+	 *
+	 * @param dbObjects the objects to write - the list must not be modified once passed to this function
+	 * @param written the callback to run once the batch has been written, or null
+	 * @param last true if no batch follows this one; false otherwise
+	 * @throws IOException if the previous batch could not be written
+	 */
+	private void write(final List<DBObject> dbObjects, Runnable written, boolean last) throws IOException
+	{
+		flush();
+
+		if (last)
+		{
+			writeBatch(dbObjects);
+
+			if (written != null)
+				written.run();
+
+			return;
+		}
+
+		if (executor == null)
+			executor = Executors.newSingleThreadExecutor();
+
+		pendingBatch = executor.submit(new Callable<Void>()
+		{
+			@Override
+			public Void call() throws Exception
+			{
+				writeBatch(dbObjects);
+				return null;
+			}
+		});
+
+		pendingCallback = written;
+	}
+
+	/**
+	 * Waits for the batch being written, if any, and runs its callback.
+	 *
+	 * @throws IOException if the batch could not be written
+	 */
+	private void flush() throws IOException
+	{
+		if (pendingBatch == null)
+			return;
+
+		Future<Void> batch = pendingBatch;
+		Runnable callback = pendingCallback;
+		pendingBatch = null;
+		pendingCallback = null;
+
+		try
+		{
+			batch.get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while writing to " + collection.getFullName());
+		}
+		catch (ExecutionException e)
+		{
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw new IOException("Failed to write to " + collection.getFullName(), cause);
+		}
+
+		if (callback != null)
+			callback.run();
+	}
+
+	/**
+	 * Stops the background thread. A batch still being written is written, but its callback is not run.
+	 */
+	private void close()
+	{
+		if (executor != null)
+			executor.shutdown();
+
+		executor = null;
+		pendingBatch = null;
+		pendingCallback = null;
+	}
+
+	/**
+	 * @param dbObjects the batch to write
+	 */
+	private void writeBatch(List<DBObject> dbObjects)
+	{
+		if (!upsert)
+		{
+			if (encoder != null)
+				collection.insert(dbObjects, writeConcern, encoder);
+			else
+				collection.insert(dbObjects, writeConcern);
+
+			return;
+		}
+
+		MongoException failure = null;
+
+		for (DBObject dbObject : dbObjects)
+		{
+			DBObject query = new BasicDBObject(Keywords.ID_KEY, dbObject.get(Keywords.ID_KEY));
+
+			try
+			{
+				if (encoder != null)
+					collection.update(query, dbObject, true, false, writeConcern, encoder);
+				else
+					collection.update(query, dbObject, true, false, writeConcern);
+			}
+			catch (MongoException e)
+			{
+				if (ordered)
+					throw e;
+
+				if (failure == null)
+					failure = e;
+			}
+		}
+
+		if (failure != null)
+			throw failure;
+	}
+
+	private final DBCollection collection;
+	private final WriteConcern writeConcern;
+	private final DBEncoder encoder;
+	private final boolean ordered;
+	private final boolean upsert;
+	private ExecutorService executor;
+	private Future<Void> pendingBatch;
+	private Runnable pendingCallback;
+}
@@ -0,0 +1,368 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.eclipse.emf.common.notify.Adapter;
+import org.eclipse.emf.common.notify.Notification;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.util.EContentAdapter;
+import org.eclipse.emf.ecore.util.FeatureMapUtil;
+
+import com.mongodb.DBCollection;
+
+/**
+ * Records the features changed on an object, and the objects embedded in it, since the object
+ * was last loaded or saved so that MongoOutputStream can update just the changed fields of the
+ * document. Each change is recorded as the object and feature changed, and is mapped to the
+ * dotted path of the field in the document when the object is saved.
+ *
+ * Objects appended to the end of a multi-valued containment reference are recorded as the
+ * number of objects in the list before the first append so that only the new objects need to be
+ * written. Other changes that move embedded objects within the document, such as removing or
+ * inserting objects in a multi-valued containment reference, and changes to feature maps are
+ * structural: the document must then be saved in full.
+ *
+ * This class is not thread safe.
+ *
+ * @author bhunt
+ */
+final class ChangeTracker extends EContentAdapter
+{
+	/**
+	 * @param collection the collection containing the document of the tracked object
+	 * @param id the id of the document of the tracked object
+	 */
+	ChangeTracker(DBCollection collection, Object id)
+	{
+		this.collectionName = collection.getFullName();
+		this.id = id;
+	}
+
+	/**
+	 * @param eObject the root object of a document
+	 * @return the change tracker attached to the object, or null if its changes are not being tracked
+	 */
+	static ChangeTracker getChangeTracker(EObject eObject)
+	{
+		for (Adapter adapter : eObject.eAdapters())
+		{
+			if (adapter instanceof ChangeTracker)
+				return (ChangeTracker) adapter;
+		}
+
+		return null;
+	}
+
+	@Override
+	public void notifyChanged(Notification notification)
+	{
+		super.notifyChanged(notification);
+
+		if (notification.isTouch() || !(notification.getNotifier() instanceof EObject) || !(notification.getFeature() instanceof EStructuralFeature))
+			return;
+
+		int eventType = notification.getEventType();
+
+		if (eventType == Notification.RESOLVE || eventType == Notification.REMOVING_ADAPTER)
+			return;
+
+		EStructuralFeature feature = (EStructuralFeature) notification.getFeature();
+
+		if (feature.isDerived() || FeatureMapUtil.isFeatureMap(feature))
+		{
+			// Changes to feature maps are notified through derived features.
+
+			structural = true;
+			return;
+		}
+
+		if (feature.isTransient())
+			return;
+
+		EObject owner = (EObject) notification.getNotifier();
+
+		if (feature.isMany() && feature instanceof EReference && ((EReference) feature).isContainment())
+		{
+			recordAppend(owner, (EReference) feature, notification);
+			return;
+		}
+
+		LinkedHashSet<EStructuralFeature> features = changes.get(owner);
+
+		if (features == null)
+		{
+			features = new LinkedHashSet<EStructuralFeature>();
+			changes.put(owner, features);
+		}
+
+		features.add(feature);
+	}
+
+	/**
+	 * @param collection the collection the object is being saved to
+	 * @param id the id of the document the object is being saved to
+	 * @return true if the changes were tracked for the given document; false otherwise
+	 */
+	boolean isTracking(DBCollection collection, Object id)
+	{
+		return collectionName.equals(collection.getFullName()) && this.id.equals(id);
+	}
+
+	/**
+	 * Maps the recorded changes to the fields of the document. The fields of objects that are
+	 * no longer part of the document are dropped, as are the fields below another changed field.
+	 *
+	 * @param root the root object of the document
+	 * @return the changed fields ordered by path, or null if the document must be saved in full
+	 */
+	TreeMap<String, Change> getChanges(EObject root)
+	{
+		if (structural)
+			return null;
+
+		TreeMap<String, Change> paths = new TreeMap<String, Change>();
+
+		for (Entry<EObject, LinkedHashMap<EReference, Integer>> entry : appends.entrySet())
+		{
+			String ownerPath = getPath(root, entry.getKey());
+
+			if (structural)
+				return null;
+
+			if (ownerPath == null)
+				continue;
+
+			for (Entry<EReference, Integer> append : entry.getValue().entrySet())
+			{
+				String name = append.getKey().getName();
+				paths.put(ownerPath.length() == 0 ? name : ownerPath + "." + name, new Change(entry.getKey(), append.getKey(), append.getValue()));
+			}
+		}
+
+		for (Entry<EObject, LinkedHashSet<EStructuralFeature>> entry : changes.entrySet())
+		{
+			String ownerPath = getPath(root, entry.getKey());
+
+			if (structural)
+				return null;
+
+			if (ownerPath == null)
+				continue;
+
+			for (EStructuralFeature feature : entry.getValue())
+				paths.put(ownerPath.length() == 0 ? feature.getName() : ownerPath + "." + feature.getName(), new Change(entry.getKey(), feature, -1));
+		}
+
+		// A path sorts after its ancestors, so the ancestors of a path have been kept by the time it is checked.
+
+		TreeMap<String, Change> prunedPaths = new TreeMap<String, Change>();
+		HashSet<String> keptPaths = new HashSet<String>();
+
+		for (Entry<String, Change> entry : paths.entrySet())
+		{
+			String path = entry.getKey();
+
+			if (isInAppendedList(paths, path))
+				return null;
+
+			boolean isDescendant = false;
+
+			for (int i = path.indexOf('.'); i != -1 && !isDescendant; i = path.indexOf('.', i + 1))
+				isDescendant = keptPaths.contains(path.substring(0, i));
+
+			if (!isDescendant)
+			{
+				keptPaths.add(path);
+				prunedPaths.put(path, entry.getValue());
+			}
+		}
+
+		return prunedPaths;
+	}
+
+	/**
+	 * Forgets the recorded changes once the document has been saved.
+	 *
+	 * @param collection the collection the object was saved to
+	 * @param id the id of the document the object was saved to
+	 */
+	void reset(DBCollection collection, Object id)
+	{
+		this.collectionName = collection.getFullName();
+		this.id = id;
+		changes.clear();
+		appends.clear();
+		structural = false;
+	}
+
+	@Override
+	protected boolean resolve()
+	{
+		return false;
+	}
+
+	/**
+	 * Records objects added to the end of a multi-valued containment reference. Any other change to
+	 * the list is structural.
+	 *
+	 * @param owner the object owning the list
+	 * @param reference the multi-valued containment reference
+	 * @param notification the notification of the change
+	 */
+	private void recordAppend(EObject owner, EReference reference, Notification notification)
+	{
+		int eventType = notification.getEventType();
+
+		if (eventType != Notification.ADD && eventType != Notification.ADD_MANY)
+		{
+			structural = true;
+			return;
+		}
+
+		int count = eventType == Notification.ADD ? 1 : ((Collection<?>) notification.getNewValue()).size();
+		int size = ((List<?>) owner.eGet(reference, false)).size();
+		int position = notification.getPosition();
+
+		if (position + count != size)
+		{
+			structural = true;
+			return;
+		}
+
+		LinkedHashMap<EReference, Integer> ownerAppends = appends.get(owner);
+
+		if (ownerAppends == null)
+		{
+			ownerAppends = new LinkedHashMap<EReference, Integer>();
+			appends.put(owner, ownerAppends);
+		}
+
+		if (!ownerAppends.containsKey(reference))
+			ownerAppends.put(reference, position);
+	}
+
+	/**
+	 * A field below an appended list is either part of an appended object, and written along with it,
+	 * or part of an object that was already in the list, which MongoDB cannot update in the same
+	 * operation as the append.
+	 *
+	 * @param paths the paths of the changed fields and appended lists
+	 * @param path the path of a changed field or appended list
+	 * @return true if the field is part of an object that was in an appended list before the append; false
+	 *         otherwise
+	 */
+	private boolean isInAppendedList(TreeMap<String, Change> paths, String path)
+	{
+		for (int i = path.indexOf('.'); i != -1; i = path.indexOf('.', i + 1))
+		{
+			Change change = paths.get(path.substring(0, i));
+
+			if (change != null && change.firstAppendedIndex != -1)
+			{
+				int end = path.indexOf('.', i + 1);
+				String index = end == -1 ? path.substring(i + 1) : path.substring(i + 1, end);
+				return Integer.parseInt(index) < change.firstAppendedIndex;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * @param root the root object of the document
+	 * @param eObject an object that was changed
+	 * @return the dotted path of the object within the document, or null if the object is not stored in the document
+	 */
+	private String getPath(EObject root, EObject eObject)
+	{
+		LinkedList<String> segments = new LinkedList<String>();
+		EObject current = eObject;
+
+		while (current != root)
+		{
+			InternalEObject internalEObject = (InternalEObject) current;
+			EObject container = internalEObject.eInternalContainer();
+
+			// Objects in their own resource are stored in their own document.
+
+			if (container == null || internalEObject.eDirectResource() != null)
+				return null;
+
+			EReference containmentFeature = current.eContainmentFeature();
+
+			if (containmentFeature.isDerived() || containmentFeature.isTransient())
+			{
+				structural = true;
+				return null;
+			}
+
+			if (containmentFeature.isMany())
+				segments.addFirst(containmentFeature.getName() + "." + ((List<?>) container.eGet(containmentFeature, false)).indexOf(current));
+			else
+				segments.addFirst(containmentFeature.getName());
+
+			current = container;
+		}
+
+		StringBuilder path = new StringBuilder();
+
+		for (String segment : segments)
+		{
+			if (path.length() > 0)
+				path.append('.');
+
+			path.append(segment);
+		}
+
+		return path.toString();
+	}
+
+	/**
+	 * A feature changed on an object of the document.
+	 */
+	static final class Change
+	{
+		Change(EObject eObject, EStructuralFeature feature, int firstAppendedIndex)
+		{
+			this.eObject = eObject;
+			this.feature = feature;
+			this.firstAppendedIndex = firstAppendedIndex;
+		}
+
+		final EObject eObject;
+		final EStructuralFeature feature;
+
+		/**
+		 * The index of the first object appended to a multi-valued containment reference, or -1 if the
+		 * whole value of the feature is to be written.
+		 */
+		final int firstAppendedIndex;
+	}
+
+	private String collectionName;
+	private Object id;
+	private boolean structural;
+	private final LinkedHashMap<EObject, LinkedHashSet<EStructuralFeature>> changes = new LinkedHashMap<EObject, LinkedHashSet<EStructuralFeature>>();
+	private final LinkedHashMap<EObject, LinkedHashMap<EReference, Integer>> appends = new LinkedHashMap<EObject, LinkedHashMap<EReference, Integer>>();
+}
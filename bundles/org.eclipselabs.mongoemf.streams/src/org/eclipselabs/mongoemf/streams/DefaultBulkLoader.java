@@ -0,0 +1,333 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EStructuralFeature;
+import org.eclipse.emf.ecore.InternalEObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
+import org.eclipselabs.emongo.MongoDatabaseProvider;
+import org.eclipselabs.mongoemf.BulkLoader;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.Options;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+/**
+ * Loads the objects of each collection with a single $in query. Each document read is handed to
+ * MongoInputStream through Options.OPTION_PRELOADED_DOCUMENT when its Resource is loaded, so the
+ * objects are built with the same options and response handling as any other load. Proxies are
+ * resolved by collecting the URIs of the proxies of one level of objects, loading them, and then
+ * resolving the proxies against the Resources just loaded.
+ *
+ * @author bhunt
+ *
+ */
+public class DefaultBulkLoader implements BulkLoader
+{
+	@Override
+	public Map<URI, Resource> load(ResourceSet resourceSet, Collection<URI> uris, Map<?, ?> options) throws IOException
+	{
+		LinkedHashMap<URI, Resource> resources = new LinkedHashMap<URI, Resource>();
+		LinkedHashMap<URI, LinkedHashSet<URI>> collections = new LinkedHashMap<URI, LinkedHashSet<URI>>();
+
+		// Group the URIs of the Resources that are not yet loaded by collection.
+
+		for (URI uri : uris)
+		{
+			URI resourceURI = uri.trimFragment();
+
+			if (resources.containsKey(resourceURI))
+				continue;
+
+			Resource resource = resourceSet.getResource(resourceURI, false);
+
+			if (resource != null && resource.isLoaded())
+			{
+				resources.put(resourceURI, resource);
+				continue;
+			}
+
+			URI collectionURI = resourceSet.getURIConverter().normalize(resourceURI).trimSegments(1).appendSegment("");
+			LinkedHashSet<URI> collectionURIs = collections.get(collectionURI);
+
+			if (collectionURIs == null)
+			{
+				collectionURIs = new LinkedHashSet<URI>();
+				collections.put(collectionURI, collectionURIs);
+			}
+
+			collectionURIs.add(resourceURI);
+		}
+
+		HashMap<Object, Object> resourceLoadOptions = new HashMap<Object, Object>(resourceSet.getLoadOptions());
+
+		if (options != null)
+			resourceLoadOptions.putAll(options);
+
+		HashMap<URI, DBObject> dbObjects = new HashMap<URI, DBObject>();
+
+		for (Entry<URI, LinkedHashSet<URI>> entry : collections.entrySet())
+			find(entry.getKey(), entry.getValue(), resourceLoadOptions, dbObjects);
+
+		// Load the Resources in the order their URIs were given.
+
+		LinkedHashMap<URI, Resource> loadedResources = new LinkedHashMap<URI, Resource>();
+
+		for (URI uri : uris)
+		{
+			URI resourceURI = uri.trimFragment();
+
+			if (loadedResources.containsKey(resourceURI))
+				continue;
+
+			Resource resource = resources.get(resourceURI);
+
+			if (resource == null)
+			{
+				DBObject dbObject = dbObjects.get(resourceURI);
+
+				if (dbObject == null)
+					continue;
+
+				resource = resourceSet.getResource(resourceURI, false);
+
+				if (resource == null)
+					resource = resourceSet.createResource(resourceURI);
+
+				HashMap<Object, Object> loadOptions = new HashMap<Object, Object>(resourceLoadOptions);
+				loadOptions.put(Options.OPTION_PRELOADED_DOCUMENT, dbObject);
+				resource.load(loadOptions);
+			}
+
+			loadedResources.put(resourceURI, resource);
+		}
+
+		return loadedResources;
+	}
+
+	@Override
+	public void resolve(ResourceSet resourceSet, int depth, Map<?, ?> options) throws IOException
+	{
+		ArrayList<EObject> eObjects = new ArrayList<EObject>();
+		HashSet<Resource> visitedResources = new HashSet<Resource>();
+
+		for (Resource resource : new ArrayList<Resource>(resourceSet.getResources()))
+		{
+			eObjects.addAll(resource.getContents());
+			visitedResources.add(resource);
+		}
+
+		resolve(resourceSet, eObjects, visitedResources, depth, options);
+	}
+
+	@Override
+	public void resolve(EObject eObject, int depth, Map<?, ?> options) throws IOException
+	{
+		Resource resource = eObject.eResource();
+
+		if (resource == null || resource.getResourceSet() == null)
+			throw new IllegalArgumentException("The object is not contained in a ResourceSet");
+
+		HashSet<Resource> visitedResources = new HashSet<Resource>();
+		visitedResources.add(resource);
+		resolve(resource.getResourceSet(), Collections.singletonList(eObject), visitedResources, depth, options);
+	}
+
+	public void bindMongoDatabaseProvider(MongoDatabaseProvider mongoDatabaseProvider)
+	{
+		mongoDatabaseProviders.put(mongoDatabaseProvider.getURI(), mongoDatabaseProvider);
+	}
+
+	public void unbindMongoDatabaseProvider(MongoDatabaseProvider mongoDatabaseProvider)
+	{
+		mongoDatabaseProviders.remove(mongoDatabaseProvider.getURI());
+	}
+
+	/**
+	 * Resolves the proxies referenced by the objects and their contents one level at a time. The
+	 * objects of the Resources loaded for a level are the objects of the next level.
+	 *
+	 * @param resourceSet the ResourceSet to load the proxies into
+	 * @param eObjects the objects of the first level
+	 * @param visitedResources the Resources whose objects have been visited
+	 * @param depth the number of levels to resolve, or -1 to resolve all levels
+	 * @param options the load options
+	 * @throws IOException if a database is not available, or a Resource could not be loaded
+	 */
+	private void resolve(ResourceSet resourceSet, List<EObject> eObjects, HashSet<Resource> visitedResources, int depth, Map<?, ?> options) throws IOException
+	{
+		URIConverter uriConverter = resourceSet.getURIConverter();
+
+		for (int level = 0; (depth < 0 || level < depth) && !eObjects.isEmpty(); level++)
+		{
+			LinkedHashSet<URI> uris = new LinkedHashSet<URI>();
+			ArrayList<EStructuralFeature.Setting> settings = new ArrayList<EStructuralFeature.Setting>();
+
+			// The contents are walked without resolving containment proxies so that they can be
+			// collected along with the cross document references.
+
+			for (Iterator<EObject> iterator = EcoreUtil.getAllContents(eObjects, false); iterator.hasNext();)
+			{
+				InternalEObject eObject = (InternalEObject) iterator.next();
+
+				if (eObject.eIsProxy())
+					continue;
+
+				for (EReference reference : eObject.eClass().getEAllReferences())
+				{
+					if (reference.isContainer() || reference.isDerived() || !eObject.eIsSet(reference))
+						continue;
+
+					boolean found = false;
+
+					if (reference.isMany())
+					{
+						for (Iterator<?> values = ((InternalEList<?>) eObject.eGet(reference, false)).basicIterator(); values.hasNext();)
+							found |= collectProxy((InternalEObject) values.next(), uriConverter, uris);
+					}
+					else
+						found = collectProxy((InternalEObject) eObject.eGet(reference, false), uriConverter, uris);
+
+					if (found)
+						settings.add(eObject.eSetting(reference));
+				}
+			}
+
+			if (uris.isEmpty())
+				break;
+
+			Map<URI, Resource> resources = load(resourceSet, uris, options);
+
+			// Only the proxies whose Resource was found are resolved; resolving any other proxy would
+			// go back to the database one object at a time.
+
+			for (EStructuralFeature.Setting setting : settings)
+			{
+				if (setting.getEStructuralFeature().isMany())
+				{
+					@SuppressWarnings("unchecked")
+					InternalEList<EObject> values = (InternalEList<EObject>) setting.get(false);
+
+					for (int i = 0; i < values.size(); i++)
+					{
+						if (isLoaded(values.basicGet(i), resources))
+							values.get(i);
+					}
+				}
+				else if (isLoaded((EObject) setting.get(false), resources))
+					setting.get(true);
+			}
+
+			eObjects = new ArrayList<EObject>();
+
+			for (Resource resource : resources.values())
+			{
+				if (visitedResources.add(resource))
+					eObjects.addAll(resource.getContents());
+			}
+		}
+	}
+
+	/**
+	 * @param value the value of a reference
+	 * @param uriConverter the converter used to normalize the proxy URI
+	 * @param uris receives the URI of the Resource of the proxy
+	 * @return true if the value is a MongoDB proxy
+	 */
+	private static boolean collectProxy(InternalEObject value, URIConverter uriConverter, Collection<URI> uris)
+	{
+		if (value == null || !value.eIsProxy())
+			return false;
+
+		URI uri = value.eProxyURI().trimFragment();
+		URI normalizedURI = uriConverter.normalize(uri);
+
+		if (!"mongodb".equalsIgnoreCase(normalizedURI.scheme()) || normalizedURI.segmentCount() != 3)
+			return false;
+
+		uris.add(uri);
+		return true;
+	}
+
+	/**
+	 * @param value the value of a reference
+	 * @param resources the Resources loaded keyed by their URI
+	 * @return true if the value is a proxy to an object whose Resource is loaded
+	 */
+	private static boolean isLoaded(EObject value, Map<URI, Resource> resources)
+	{
+		return value != null && value.eIsProxy() && resources.containsKey(((InternalEObject) value).eProxyURI().trimFragment());
+	}
+
+	/**
+	 * Reads the documents of a collection with a single query.
+	 *
+	 * @param collectionURI the URI of the collection
+	 * @param uris the URIs of the objects in the collection
+	 * @param options the load options
+	 * @param dbObjects receives the documents found keyed by the URI of their object
+	 * @throws IOException if a URI is malformed or the database is not available
+	 */
+	private void find(URI collectionURI, Collection<URI> uris, Map<?, ?> options, Map<URI, DBObject> dbObjects) throws IOException
+	{
+		DBCollection collection = MongoUtils.getCollection(mongoDatabaseProviders, collectionURI, options);
+		HashMap<Object, URI> ids = new HashMap<Object, URI>();
+
+		for (URI uri : uris)
+			ids.put(MongoUtils.getID(uri), uri);
+
+		DBCursor cursor = collection.find(new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", new ArrayList<Object>(ids.keySet()))));
+
+		try
+		{
+			while (cursor.hasNext())
+			{
+				DBObject dbObject = cursor.next();
+				URI uri = ids.get(dbObject.get(Keywords.ID_KEY));
+
+				if (uri != null)
+					dbObjects.put(uri, dbObject);
+			}
+		}
+		finally
+		{
+			cursor.close();
+		}
+	}
+
+	private Map<String, MongoDatabaseProvider> mongoDatabaseProviders = new ConcurrentHashMap<String, MongoDatabaseProvider>();
+}
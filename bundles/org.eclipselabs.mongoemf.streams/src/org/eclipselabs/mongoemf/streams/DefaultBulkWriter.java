@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipselabs.emongo.MongoDatabaseProvider;
+import org.eclipselabs.mongoemf.BulkWriter;
+import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.DBObjectBuilder;
+import org.eclipselabs.mongoemf.DBObjectBuilderFactory;
+import org.eclipselabs.mongoemf.DirectDBObjectBuilder;
+import org.eclipselabs.mongoemf.DocumentCache;
+import org.eclipselabs.mongoemf.MongoUtils;
+import org.eclipselabs.mongoemf.Options;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBEncoder;
+import com.mongodb.WriteConcern;
+
+/**
+ * @author bhunt
+ *
+ */
+public class DefaultBulkWriter implements BulkWriter
+{
+	@Override
+	public long write(URI collectionURI, Iterator<? extends EObject> eObjects, Map<?, ?> options, final Listener listener) throws IOException
+	{
+		if (options == null)
+			options = Collections.emptyMap();
+
+		final DBCollection collection = MongoUtils.getCollection(mongoDatabaseProviders, collectionURI, options);
+		final DocumentCache documentCache = this.documentCache;
+
+		// Cross references are stored relative to a dummy id in the collection as they are when
+		// saving a resource without an id.
+
+		XMLResource.URIHandler uriHandler = (XMLResource.URIHandler) options.get(XMLResource.OPTION_URI_HANDLER);
+
+		if (uriHandler == null)
+			uriHandler = new org.eclipse.emf.ecore.xmi.impl.URIHandlerImpl();
+
+		uriHandler.setBaseURI(collectionURI.trimQuery().trimSegments(1).appendSegment("-1"));
+
+		boolean serializeDefaultAttributeValues = Boolean.TRUE.equals(options.get(Options.OPTION_SERIALIZE_DEFAULT_ATTRIBUTE_VALUES));
+		DBObjectBuilder builder = dbObjectBuilderFactory.createBuilder(converterService, uriHandler, serializeDefaultAttributeValues);
+		DBEncoder encoder = Boolean.TRUE.equals(options.get(Options.OPTION_DIRECT_ENCODING)) && builder instanceof DirectDBObjectBuilder ? ((DirectDBObjectBuilder) builder).getDBEncoderFactory().create() : null;
+
+		Integer batchSizeOption = (Integer) options.get(Options.OPTION_BATCH_SIZE);
+		int batchSize = batchSizeOption != null && batchSizeOption > 0 ? batchSizeOption : DEFAULT_BATCH_SIZE;
+		boolean ordered = !Boolean.FALSE.equals(options.get(Options.OPTION_ORDERED));
+		boolean upsert = Boolean.TRUE.equals(options.get(Options.OPTION_UPSERT));
+		boolean useIdAttributeAsPrimaryKey = Boolean.TRUE.equals(options.get(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY));
+		long timeStamp = System.currentTimeMillis();
+
+		BatchWriter batchWriter = new BatchWriter(collection, (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN), encoder, ordered, upsert);
+
+		return batchWriter.write(eObjects, builder, batchSize, timeStamp, useIdAttributeAsPrimaryKey, listener == null && documentCache == null ? null : new Listener()
+		{
+			@Override
+			public void batchWritten(List<EObject> batch, List<Object> ids)
+			{
+				if (documentCache != null)
+				{
+					for (Object id : ids)
+						documentCache.invalidate(collection, id);
+				}
+
+				if (listener != null)
+					listener.batchWritten(batch, ids);
+			}
+		});
+	}
+
+	public void bindConverterService(ConverterService converterService)
+	{
+		this.converterService = converterService;
+	}
+
+	public void bindDBObjectBuilderFactory(DBObjectBuilderFactory dbObjectBuilderFactory)
+	{
+		this.dbObjectBuilderFactory = dbObjectBuilderFactory;
+	}
+
+	public void bindDocumentCache(DocumentCache documentCache)
+	{
+		this.documentCache = documentCache;
+	}
+
+	public void unbindDocumentCache(DocumentCache documentCache)
+	{
+		if (this.documentCache == documentCache)
+			this.documentCache = null;
+	}
+
+	public void bindMongoDatabaseProvider(MongoDatabaseProvider mongoDatabaseProvider)
+	{
+		mongoDatabaseProviders.put(mongoDatabaseProvider.getURI(), mongoDatabaseProvider);
+	}
+
+	public void unbindMongoDatabaseProvider(MongoDatabaseProvider mongoDatabaseProvider)
+	{
+		mongoDatabaseProviders.remove(mongoDatabaseProvider.getURI());
+	}
+
+	private ConverterService converterService;
+	private DBObjectBuilderFactory dbObjectBuilderFactory;
+	private volatile DocumentCache documentCache;
+	private Map<String, MongoDatabaseProvider> mongoDatabaseProviders = new ConcurrentHashMap<String, MongoDatabaseProvider>();
+}
@@ -0,0 +1,112 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipselabs.mongoemf.DocumentCache;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+
+/**
+ * A process wide cache of documents bounded by the number of documents. When the cache is full,
+ * the least recently used document is discarded. The maximum number of documents is set with the
+ * maximumSize component property.
+ * 
+ * This class is thread safe.
+ * 
+ * @author bhunt
+ */
+public class DefaultDocumentCache implements DocumentCache
+{
+	public DefaultDocumentCache()
+	{
+		this(DEFAULT_MAXIMUM_SIZE);
+	}
+
+	/**
+	 * @param maximumSize the maximum number of documents cached
+	 */
+	public DefaultDocumentCache(int maximumSize)
+	{
+		this.maximumSize = maximumSize;
+	}
+
+	@Override
+	public synchronized DBObject get(DBCollection collection, Object id, long maxAge)
+	{
+		Entry entry = entries.get(new DocumentKey(collection, id));
+
+		if (entry == null || (maxAge >= 0 && System.currentTimeMillis() - entry.time > maxAge))
+			return null;
+
+		return entry.dbObject;
+	}
+
+	@Override
+	public synchronized void put(DBCollection collection, Object id, DBObject dbObject)
+	{
+		entries.put(new DocumentKey(collection, id), new Entry(dbObject, System.currentTimeMillis()));
+	}
+
+	@Override
+	public synchronized void invalidate(DBCollection collection, Object id)
+	{
+		entries.remove(new DocumentKey(collection, id));
+	}
+
+	@Override
+	public synchronized void clear()
+	{
+		entries.clear();
+	}
+
+	synchronized void activate(Map<String, Object> properties)
+	{
+		Integer maximumSizeValue = (Integer) properties.get("maximumSize");
+
+		if (maximumSizeValue != null)
+			maximumSize = maximumSizeValue;
+	}
+
+	/**
+	 * A cached document and the time it was cached.
+	 */
+	private static final class Entry
+	{
+		Entry(DBObject dbObject, long time)
+		{
+			this.dbObject = dbObject;
+			this.time = time;
+		}
+
+		final DBObject dbObject;
+		final long time;
+	}
+
+	private static final int DEFAULT_MAXIMUM_SIZE = 10000;
+
+	private int maximumSize;
+
+	private final LinkedHashMap<DocumentKey, Entry> entries = new LinkedHashMap<DocumentKey, Entry>(16, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<DocumentKey, Entry> eldest)
+		{
+			return size() > maximumSize;
+		}
+	};
+}
@@ -20,6 +20,8 @@ import org.eclipse.emf.common.util.URI;
 import org.eclipselabs.emongo.MongoIdFactory;
 import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.DBObjectBuilderFactory;
+import org.eclipselabs.mongoemf.DocumentCache;
+import org.eclipselabs.mongoemf.EClassCache;
 import org.eclipselabs.mongoemf.EObjectBuilderFactory;
 import org.eclipselabs.mongoemf.InputStreamFactory;
 import org.eclipselabs.mongoemf.OutputStreamFactory;
@@ -36,13 +38,13 @@ public class DefaultStreamFactory implements InputStreamFactory, OutputStreamFac
 	@Override
 	public OutputStream createOutputStream(URI uri, Map<?, ?> options, DBCollection collection, Map<Object, Object> response)
 	{
-		return new MongoOutputStream(converterService, dbObjectBuilderFactory, collection, uri, idFactories, options, response);
+		return new MongoOutputStream(converterService, dbObjectBuilderFactory, collection, uri, idFactories, options, response, documentCache);
 	}
 
 	@Override
 	public InputStream createInputStream(URI uri, Map<?, ?> options, DBCollection collection, Map<Object, Object> response) throws IOException
 	{
-		return new MongoInputStream(converterService, eObjectBuilderFactory, queryEngine, collection, uri, options, response);
+		return new MongoInputStream(converterService, eObjectBuilderFactory, eClassCache, queryEngine, collection, uri, options, response, findCoalescer, documentCache);
 	}
 
 	public void bindConverterService(ConverterService converterService)
@@ -60,11 +62,27 @@ public class DefaultStreamFactory implements InputStreamFactory, OutputStreamFac
 		this.eObjectBuilderFactory = eObjectBuilderFactory;
 	}
 
+	public void bindEClassCache(EClassCache eClassCache)
+	{
+		this.eClassCache = eClassCache;
+	}
+
 	public void bindQueryEngine(QueryEngine queryEngine)
 	{
 		this.queryEngine = queryEngine;
 	}
 
+	public void bindDocumentCache(DocumentCache documentCache)
+	{
+		this.documentCache = documentCache;
+	}
+
+	public void unbindDocumentCache(DocumentCache documentCache)
+	{
+		if (this.documentCache == documentCache)
+			this.documentCache = null;
+	}
+
 	public synchronized void bindMongoIdFactory(MongoIdFactory mongoIdFactory)
 	{
 		idFactories.put(mongoIdFactory.getCollectionURI(), mongoIdFactory);
@@ -80,7 +98,10 @@ public class DefaultStreamFactory implements InputStreamFactory, OutputStreamFac
 
 	private DBObjectBuilderFactory dbObjectBuilderFactory;
 	private EObjectBuilderFactory eObjectBuilderFactory;
+	private EClassCache eClassCache;
 	private QueryEngine queryEngine;
 	private ConverterService converterService;
+	private volatile DocumentCache documentCache;
 	private volatile Map<String, MongoIdFactory> idFactories;
+	private final FindCoalescer findCoalescer = new FindCoalescer();
 }
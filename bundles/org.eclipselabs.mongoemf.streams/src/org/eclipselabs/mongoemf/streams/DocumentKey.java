@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import com.mongodb.DBCollection;
+
+/**
+ * The collection and id of a document. DB caches its DBCollection instances, so the same
+ * collection of the same database is always the same instance and collections are compared by
+ * identity.
+ * 
+ * @author bhunt
+ */
+final class DocumentKey
+{
+	DocumentKey(DBCollection collection, Object id)
+	{
+		this.collection = collection;
+		this.id = id;
+	}
+
+	@Override
+	public boolean equals(Object object)
+	{
+		if (!(object instanceof DocumentKey))
+			return false;
+
+		DocumentKey key = (DocumentKey) object;
+		return collection == key.collection && id.equals(key.id);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return System.identityHashCode(collection) * 31 + id.hashCode();
+	}
+
+	private final DBCollection collection;
+	private final Object id;
+}
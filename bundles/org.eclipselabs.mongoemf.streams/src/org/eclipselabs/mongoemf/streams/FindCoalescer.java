@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Coalesces concurrent finds by id. Only one find is in flight for an id of a collection at a
+ * time: a thread asking for an id that is already being read waits for that read and is given
+ * the same document. The ids asked for while a batch is open are read together with a single
+ * $in query. A batch is opened by the first thread asking for an id that is not being read,
+ * stays open for the given window, and is then read by that thread.
+ *
+ * The documents returned are shared by the threads that asked for them and must not be
+ * modified.
+ *
+ * This class is thread safe.
+ *
+ * @author bhunt
+ */
+final class FindCoalescer
+{
+	/**
+	 * @param collection the collection to read the document from
+	 * @param id the id of the document
+	 * @param window the time in milliseconds to wait for other ids to read in the same query
+	 * @return the document, or null if there is no document with the id
+	 */
+	DBObject find(DBCollection collection, Object id, long window)
+	{
+		DocumentKey key = new DocumentKey(collection, id);
+		Batch batch;
+		boolean leader = false;
+
+		synchronized (this)
+		{
+			batch = inFlight.get(key);
+
+			if (batch == null)
+			{
+				batch = openBatches.get(collection);
+
+				if (batch == null)
+				{
+					batch = new Batch(collection);
+					openBatches.put(collection, batch);
+					leader = true;
+				}
+
+				batch.ids.add(id);
+				inFlight.put(key, batch);
+			}
+		}
+
+		if (leader)
+		{
+			if (window > 0)
+			{
+				try
+				{
+					Thread.sleep(window);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			synchronized (this)
+			{
+				openBatches.remove(collection);
+			}
+
+			read(batch);
+		}
+
+		return batch.get(id);
+	}
+
+	/**
+	 * Reads the documents of a batch that has been closed and hands them to the waiting threads.
+	 *
+	 * @param batch the batch to read
+	 */
+	private void read(Batch batch)
+	{
+		HashMap<Object, DBObject> dbObjects = new HashMap<Object, DBObject>();
+		Throwable failure = null;
+
+		try
+		{
+			if (batch.ids.size() == 1)
+			{
+				Object id = batch.ids.iterator().next();
+				DBObject dbObject = batch.collection.findOne(new BasicDBObject(Keywords.ID_KEY, id));
+
+				if (dbObject != null)
+					dbObjects.put(id, dbObject);
+			}
+			else
+			{
+				DBCursor cursor = batch.collection.find(new BasicDBObject(Keywords.ID_KEY, new BasicDBObject("$in", new ArrayList<Object>(batch.ids))));
+
+				try
+				{
+					while (cursor.hasNext())
+					{
+						DBObject dbObject = cursor.next();
+						dbObjects.put(dbObject.get(Keywords.ID_KEY), dbObject);
+					}
+				}
+				finally
+				{
+					cursor.close();
+				}
+			}
+		}
+		catch (RuntimeException e)
+		{
+			failure = e;
+		}
+		catch (Error e)
+		{
+			failure = e;
+			throw e;
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				for (Object id : batch.ids)
+					inFlight.remove(new DocumentKey(batch.collection, id));
+			}
+
+			batch.complete(dbObjects, failure);
+		}
+	}
+
+	/**
+	 * The ids read with one query, and the documents read once the query completes.
+	 */
+	private static final class Batch
+	{
+		Batch(DBCollection collection)
+		{
+			this.collection = collection;
+		}
+
+		synchronized DBObject get(Object id)
+		{
+			boolean interrupted = false;
+
+			while (dbObjects == null)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					interrupted = true;
+				}
+			}
+
+			if (interrupted)
+				Thread.currentThread().interrupt();
+
+			if (failure != null)
+				throw new MongoException("Failed to read the document with id " + id, failure);
+
+			return dbObjects.get(id);
+		}
+
+		synchronized void complete(Map<Object, DBObject> dbObjects, Throwable failure)
+		{
+			this.dbObjects = dbObjects;
+			this.failure = failure;
+			notifyAll();
+		}
+
+		final DBCollection collection;
+		final LinkedHashSet<Object> ids = new LinkedHashSet<Object>();
+		private Map<Object, DBObject> dbObjects;
+		private Throwable failure;
+	}
+
+	private final HashMap<DocumentKey, Batch> inFlight = new HashMap<DocumentKey, Batch>();
+	private final HashMap<DBCollection, Batch> openBatches = new HashMap<DBCollection, Batch>();
+}
@@ -0,0 +1,208 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipselabs.mongoemf.Keywords;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+/**
+ * Pages through the result of a query by seeking past the last object of the previous page
+ * rather than skipping the objects of the previous pages, so every page costs the same to read.
+ * The result is sorted on the sort keys of the query followed by _id, which makes the order
+ * total. The continuation token of a page holds the values of those keys in the last object of
+ * the page; the next page is read with a filter matching only the objects that sort after them.
+ *
+ * The sort keys should have a single, non-null value in each document for the pages to be
+ * complete.
+ *
+ * @author bhunt
+ */
+final class KeysetPaging
+{
+	private KeysetPaging()
+	{}
+
+	/**
+	 * @param sort the sort of the query, or null
+	 * @return the sort of the query followed by _id in ascending order if it is not already sorted on
+	 */
+	static DBObject getSort(DBObject sort)
+	{
+		DBObject pageSort = new BasicDBObject();
+
+		if (sort != null)
+			pageSort.putAll(sort);
+
+		if (!pageSort.containsField(Keywords.ID_KEY))
+			pageSort.put(Keywords.ID_KEY, 1);
+
+		return pageSort;
+	}
+
+	/**
+	 * @param projection the projection of the query, or null
+	 * @param sort the sort of the pages
+	 * @return the projection including the sort keys if it lists the fields to include
+	 */
+	static DBObject getProjection(DBObject projection, DBObject sort)
+	{
+		if (projection == null)
+			return null;
+
+		for (String key : projection.keySet())
+		{
+			Object value = projection.get(key);
+
+			if (Keywords.ID_KEY.equals(key) || !((value instanceof Number && ((Number) value).intValue() != 0) || Boolean.TRUE.equals(value)))
+				continue;
+
+			DBObject pageProjection = new BasicDBObject();
+			pageProjection.putAll(projection);
+
+			for (String sortKey : sort.keySet())
+			{
+				if (!Keywords.ID_KEY.equals(sortKey))
+					pageProjection.put(sortKey, 1);
+			}
+
+			return pageProjection;
+		}
+
+		return projection;
+	}
+
+	/**
+	 * @param sort the sort of the pages
+	 * @param token the continuation token of the previous page
+	 * @return the filter matching the objects that sort after the last object of the previous page
+	 * @throws IOException if the token is malformed or was not created for the sort
+	 */
+	static DBObject buildSeekFilter(DBObject sort, String token) throws IOException
+	{
+		List<?> values = decodeToken(token);
+		ArrayList<String> keys = new ArrayList<String>(sort.keySet());
+
+		if (values.size() != keys.size())
+			throw new IOException("The continuation token does not match the sort of the query");
+
+		// The objects following (v0, v1, ... vn) are those with k0 after v0, or k0 equal to v0 and k1
+		// after v1, and so on.
+
+		BasicDBList or = new BasicDBList();
+
+		for (int i = 0; i < keys.size(); i++)
+		{
+			DBObject alternative = new BasicDBObject();
+
+			for (int j = 0; j < i; j++)
+				alternative.put(keys.get(j), values.get(j));
+
+			Object direction = sort.get(keys.get(i));
+			boolean descending = direction instanceof Number && ((Number) direction).intValue() < 0;
+			alternative.put(keys.get(i), new BasicDBObject(descending ? "$lt" : "$gt", values.get(i)));
+			or.add(alternative);
+		}
+
+		return or.size() == 1 ? (DBObject) or.get(0) : new BasicDBObject("$or", or);
+	}
+
+	/**
+	 * @param sort the sort of the pages
+	 * @param dbObject the last document of a page
+	 * @return the continuation token of the page
+	 */
+	static String createToken(DBObject sort, DBObject dbObject)
+	{
+		BasicDBList values = new BasicDBList();
+
+		for (String key : sort.keySet())
+			values.add(getField(dbObject, key));
+
+		try
+		{
+			byte[] bytes = JSON.serialize(values).getBytes("UTF-8");
+			StringBuilder token = new StringBuilder(bytes.length * 2);
+
+			for (byte b : bytes)
+				token.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+
+			return token.toString();
+		}
+		catch (UnsupportedEncodingException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param token a continuation token
+	 * @return the sort key values held by the token
+	 * @throws IOException if the token is malformed
+	 */
+	private static List<?> decodeToken(String token) throws IOException
+	{
+		try
+		{
+			if (token.length() % 2 != 0)
+				throw new IllegalArgumentException();
+
+			byte[] bytes = new byte[token.length() / 2];
+
+			for (int i = 0; i < bytes.length; i++)
+				bytes[i] = (byte) Integer.parseInt(token.substring(i * 2, i * 2 + 2), 16);
+
+			Object values = JSON.parse(new String(bytes, "UTF-8"));
+
+			if (!(values instanceof List<?>))
+				throw new IllegalArgumentException();
+
+			return (List<?>) values;
+		}
+		catch (RuntimeException e)
+		{
+			IOException exception = new IOException("The continuation token is malformed");
+			exception.initCause(e);
+			throw exception;
+		}
+	}
+
+	/**
+	 * @param dbObject a document
+	 * @param key the name of a field, or a dotted path to a field of an embedded document
+	 * @return the value of the field, or null if the document does not have the field
+	 */
+	private static Object getField(DBObject dbObject, String key)
+	{
+		Object value = dbObject;
+
+		for (String segment : key.split("\\."))
+		{
+			if (!(value instanceof DBObject))
+				return null;
+
+			value = ((DBObject) value).get(segment);
+		}
+
+		return value;
+	}
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+}
@@ -13,20 +13,29 @@ package org.eclipselabs.mongoemf.streams;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
-import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.URIConverter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipse.emf.ecore.util.InternalEList;
 import org.eclipse.emf.ecore.xmi.XMLResource;
+import org.eclipselabs.emodeling.ECollection;
 import org.eclipselabs.emodeling.EReferenceCollection;
 import org.eclipselabs.emodeling.EmodelingFactory;
 import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.DirectEObjectBuilder;
+import org.eclipselabs.mongoemf.DocumentCache;
+import org.eclipselabs.mongoemf.EClassCache;
 import org.eclipselabs.mongoemf.EObjectBuilder;
 import org.eclipselabs.mongoemf.EObjectBuilderFactory;
 import org.eclipselabs.mongoemf.Keywords;
@@ -37,7 +46,10 @@ import org.eclipselabs.mongoemf.model.ModelFactory;
 import org.eclipselabs.mongoemf.model.MongoCursor;
 import org.eclipselabs.mongoemf.model.MongoQuery;
 
+import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
+import com.mongodb.Bytes;
+import com.mongodb.CommandResult;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
@@ -48,7 +60,22 @@ import com.mongodb.DBObject;
  */
 public class MongoInputStream extends InputStream implements URIConverter.Loadable
 {
+	/**
+	 * @deprecated use the constructor that takes the EClass cache shared between loads; this one
+	 *             loads without an EClass cache
+	 */
+	@Deprecated
 	public MongoInputStream(ConverterService converterService, EObjectBuilderFactory builderFactory, QueryEngine queryEngine, DBCollection collection, URI uri, Map<?, ?> options, Map<Object, Object> response) throws IOException
+	{
+		this(converterService, builderFactory, null, queryEngine, collection, uri, options, response);
+	}
+
+	public MongoInputStream(ConverterService converterService, EObjectBuilderFactory builderFactory, EClassCache eClassCache, QueryEngine queryEngine, DBCollection collection, URI uri, Map<?, ?> options, Map<Object, Object> response) throws IOException
+	{
+		this(converterService, builderFactory, eClassCache, queryEngine, collection, uri, options, response, null, null);
+	}
+
+	MongoInputStream(ConverterService converterService, EObjectBuilderFactory builderFactory, EClassCache eClassCache, QueryEngine queryEngine, DBCollection collection, URI uri, Map<?, ?> options, Map<Object, Object> response, FindCoalescer findCoalescer, DocumentCache documentCache) throws IOException
 	{
 		if (converterService == null)
 			throw new NullPointerException("The converter service must not be null");
@@ -58,11 +85,14 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 
 		this.converterService = converterService;
 		this.builderFactory = builderFactory;
+		this.eClassCache = eClassCache;
 		this.queryEngine = queryEngine;
 		this.collection = collection;
 		this.uri = uri;
 		this.options = options;
 		this.response = response;
+		this.findCoalescer = findCoalescer;
+		this.documentCache = documentCache;
 	}
 
 	@Override
@@ -82,6 +112,7 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 
 		boolean includeAttributesForProxyReferences = Boolean.TRUE.equals(options.get(Options.OPTION_PROXY_ATTRIBUTES));
 		EObjectBuilder builder = builderFactory.createObjectBuilder(converterService, uriHandler, includeAttributesForProxyReferences, eClassCache);
+		boolean directDecoding = Boolean.TRUE.equals(options.get(Options.OPTION_DIRECT_DECODING)) && builder instanceof DirectEObjectBuilder;
 
 		// If the URI contains a query string, use it to locate a collection of objects from
 		// MongoDB, otherwise simply get the object from MongoDB using the id.
@@ -94,30 +125,123 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 				throw new IOException("The query engine was not found");
 
 			MongoQuery mongoQuery = queryEngine.buildDBObjectQuery(uri);
+
+			if (mongoQuery.getFilter() != null)
+				mongoQuery.setFilter((DBObject) bindParameters(mongoQuery.getFilter(), (Map<?, ?>) options.get(Options.OPTION_QUERY_PARAMETERS)));
+
+			// Counting the result, or testing whether there is one, reads no objects and leaves the
+			// Resource empty.
+
+			if (Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_COUNT)) || Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_EXISTS)))
+			{
+				summarizeQuery(mongoQuery);
+				return;
+			}
+
+			DBObject filter = mongoQuery.getFilter();
 			DBCursor resultCursor = null;
 
-			if (mongoQuery.getProjection() == null)
-				resultCursor = collection.find(mongoQuery.getFilter());
+			// When refreshing the result of a previous load, only the objects saved since then are read
+			// unless the result is limited or sorted, in which case the whole result is read again. The
+			// merged objects would otherwise be out of order.
+
+			Long modifiedSince = (Long) options.get(Options.OPTION_QUERY_MODIFIED_SINCE);
+			ECollection refreshedCollection = null;
+			boolean incremental = false;
+
+			if (modifiedSince != null)
+			{
+				if (!contents.isEmpty() && contents.get(0) instanceof ECollection)
+					refreshedCollection = (ECollection) contents.get(0);
+				else
+					contents.clear();
+
+				incremental = refreshedCollection != null && modifiedSince != URIConverter.NULL_TIME_STAMP && mongoQuery.getSkip() == null && mongoQuery.getLimit() == null && mongoQuery.getSort() == null;
+			}
+
+			if (incremental)
+			{
+				DBObject modified = new BasicDBObject(Keywords.TIME_STAMP_KEY, new BasicDBObject("$gte", modifiedSince));
+				filter = filter == null ? modified : new BasicDBObject("$and", Arrays.asList(filter, modified));
+			}
+
+			// A page of the result is read by seeking past the last object of the previous page, which
+			// requires the result to be sorted on keys that end with _id.
+
+			boolean createCursor = Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_CURSOR));
+			Integer queryPageSize = (Integer) options.get(Options.OPTION_QUERY_PAGE_SIZE);
+			boolean paged = queryPageSize != null && queryPageSize > 0 && refreshedCollection == null && !createCursor;
+			DBObject projection = mongoQuery.getProjection();
+			DBObject sort = mongoQuery.getSort();
+			String continuationToken = null;
+
+			if (paged)
+			{
+				sort = KeysetPaging.getSort(sort);
+				projection = KeysetPaging.getProjection(projection, sort);
+				continuationToken = (String) options.get(Options.OPTION_CONTINUATION_TOKEN);
+
+				if (continuationToken != null)
+				{
+					DBObject seek = KeysetPaging.buildSeekFilter(sort, continuationToken);
+					filter = filter == null ? seek : new BasicDBObject("$and", Arrays.asList(filter, seek));
+				}
+			}
+
+			if (projection == null)
+				resultCursor = collection.find(filter);
 			else
-				resultCursor = collection.find(mongoQuery.getFilter(), mongoQuery.getProjection());
+				resultCursor = collection.find(filter, projection);
 
-			if (mongoQuery.getSkip() != null)
+			if (mongoQuery.getSkip() != null && continuationToken == null)
 				resultCursor.skip(mongoQuery.getSkip());
 
-			if (mongoQuery.getSort() != null)
-				resultCursor = resultCursor.sort(mongoQuery.getSort());
+			if (sort != null)
+				resultCursor = resultCursor.sort(sort);
 
-			if (mongoQuery.getLimit() != null)
+			if (paged)
+				resultCursor = resultCursor.limit(queryPageSize);
+			else if (mongoQuery.getLimit() != null)
 				resultCursor = resultCursor.limit(mongoQuery.getLimit());
 
-			boolean createCursor = Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_CURSOR));
+			if (mongoQuery.getBatchSize() != null)
+				resultCursor = resultCursor.batchSize(mongoQuery.getBatchSize());
 
-			if (createCursor)
+			if (mongoQuery.getMaxTimeMS() != null)
+				resultCursor = resultCursor.addSpecial("$maxTimeMS", mongoQuery.getMaxTimeMS());
+
+			if (mongoQuery.getMaxScan() != null)
+				resultCursor = resultCursor.addSpecial("$maxScan", mongoQuery.getMaxScan());
+
+			if (mongoQuery.getHint() != null)
+				resultCursor = resultCursor.hint(mongoQuery.getHint());
+
+			if (Boolean.TRUE.equals(mongoQuery.getNoCursorTimeout()))
+				resultCursor = resultCursor.addOption(Bytes.QUERYOPTION_NOTIMEOUT);
+
+			if (refreshedCollection != null)
+			{
+				if (directDecoding)
+					resultCursor.setDecoderFactory(((DirectEObjectBuilder) builder).getDBDecoderFactory(resource, true));
+
+				long timeStamp = refreshCollection(builder, resource, mongoQuery.getFilter(), resultCursor, refreshedCollection, incremental);
+				response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, Math.max(timeStamp, modifiedSince));
+			}
+			else if (createCursor)
 			{
 				MongoCursor cursor = ModelFactory.eINSTANCE.createMongoCursor();
 				cursor.setDbCollection(collection);
 				cursor.setDbCursor(resultCursor);
 				cursor.setObjectBuilder(builder);
+
+				Integer pageSize = (Integer) options.get(Options.OPTION_CURSOR_PAGE_SIZE);
+
+				if (pageSize != null && pageSize > 0)
+				{
+					resultCursor.batchSize(pageSize);
+					cursor.setPageSize(pageSize);
+				}
+
 				contents.add(cursor);
 			}
 			else
@@ -125,28 +249,433 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 				EReferenceCollection eCollection = EmodelingFactory.eINSTANCE.createEReferenceCollection();
 				InternalEList<EObject> values = (InternalEList<EObject>) eCollection.getValues();
 
-				for (DBObject dbObject : resultCursor)
-					values.addUnique(builder.buildEObject(collection, dbObject, resource, true));
+				// The documents of a page are not decoded directly since the sort key values of the last
+				// document are needed to create the continuation token.
+
+				if (directDecoding && !paged)
+					resultCursor.setDecoderFactory(((DirectEObjectBuilder) builder).getDBDecoderFactory(resource, true));
+
+				// Reading ahead is skipped when decoding directly since the objects would then be built
+				// on the background thread.
+
+				long timeStamp;
+
+				if (paged)
+				{
+					List<DBObject> page = resultCursor.toArray();
+					timeStamp = buildEObjects(builder, resource, page.iterator(), values);
+
+					// A full page may be followed by more objects; the last page has no token.
+
+					if (page.size() == queryPageSize)
+						response.put(Options.RESPONSE_CONTINUATION_TOKEN, KeysetPaging.createToken(sort, page.get(page.size() - 1)));
+				}
+				else if (Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_READ_AHEAD)) && !directDecoding)
+				{
+					ReadAheadIterator dbObjects = new ReadAheadIterator(resultCursor, mongoQuery.getBatchSize() != null ? Math.abs(mongoQuery.getBatchSize()) : DEFAULT_READ_AHEAD);
+
+					try
+					{
+						timeStamp = buildEObjects(builder, resource, dbObjects, values);
+					}
+					finally
+					{
+						dbObjects.close();
+					}
+				}
+				else
+					timeStamp = buildEObjects(builder, resource, resultCursor, values);
 
 				contents.add(eCollection);
+
+				// The time stamp of the result is that of the most recently saved object so that the
+				// result can later be refreshed with the objects saved since.
+
+				if (timeStamp != URIConverter.NULL_TIME_STAMP)
+					response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, timeStamp);
 			}
 		}
 		else
 		{
-			DBObject dbObject = collection.findOne(new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri)));
+			// A BulkLoader passes the document it has already read for the object.
+
+			Object id = MongoUtils.getID(uri);
+			DBObject dbObject = (DBObject) options.get(Options.OPTION_PRELOADED_DOCUMENT);
+
+			if (dbObject == null || !id.equals(dbObject.get(Keywords.ID_KEY)))
+				dbObject = findObject(builder, resource, id, directDecoding);
 
 			if (dbObject != null)
 			{
 				EObject eObject = builder.buildEObject(collection, dbObject, resource, false);
 
 				if (eObject != null)
+				{
+					if (Boolean.TRUE.equals(options.get(Options.OPTION_TRACK_CHANGES)))
+						eObject.eAdapters().add(new ChangeTracker(collection, dbObject.get(Keywords.ID_KEY)));
+
 					contents.add(eObject);
+				}
 
 				response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, dbObject.get(Keywords.TIME_STAMP_KEY));
 			}
 		}
 	}
 
+	/**
+	 * @param builder the builder to build the object with
+	 * @param resource the resource being loaded
+	 * @param id the id of the object
+	 * @param directDecoding true if the object is to be built while it is decoded
+	 * @return the document of the object, or null if the object does not exist
+	 */
+	private DBObject findObject(EObjectBuilder builder, Resource resource, Object id, boolean directDecoding)
+	{
+		if (directDecoding || documentCache == null || !Boolean.TRUE.equals(options.get(Options.OPTION_DOCUMENT_CACHE)))
+			return readObject(builder, resource, id, directDecoding);
+
+		// A cached document younger than the maximum age is trusted. An older one is used if its
+		// time stamp still matches the time stamp of the stored document.
+
+		Long maxAge = (Long) options.get(Options.OPTION_DOCUMENT_CACHE_MAX_AGE);
+		DBObject dbObject = maxAge != null ? documentCache.get(collection, id, maxAge) : null;
+
+		if (dbObject != null)
+			return dbObject;
+
+		dbObject = documentCache.get(collection, id, -1);
+
+		if (dbObject != null)
+		{
+			DBObject timeStamp = collection.findOne(new BasicDBObject(Keywords.ID_KEY, id), new BasicDBObject(Keywords.TIME_STAMP_KEY, 1));
+
+			if (timeStamp == null)
+			{
+				documentCache.invalidate(collection, id);
+				return null;
+			}
+
+			Object cachedTimeStamp = dbObject.get(Keywords.TIME_STAMP_KEY);
+
+			if (cachedTimeStamp != null && cachedTimeStamp.equals(timeStamp.get(Keywords.TIME_STAMP_KEY)))
+			{
+				documentCache.put(collection, id, dbObject);
+				return dbObject;
+			}
+		}
+
+		dbObject = readObject(builder, resource, id, false);
+
+		if (dbObject != null)
+			documentCache.put(collection, id, dbObject);
+		else
+			documentCache.invalidate(collection, id);
+
+		return dbObject;
+	}
+
+	/**
+	 * @param builder the builder to build the object with
+	 * @param resource the resource being loaded
+	 * @param id the id of the object
+	 * @param directDecoding true if the object is to be built while it is decoded
+	 * @return the document of the object read from MongoDB, or null if the object does not exist
+	 */
+	private DBObject readObject(EObjectBuilder builder, Resource resource, Object id, boolean directDecoding)
+	{
+		if (!directDecoding && findCoalescer != null && Boolean.TRUE.equals(options.get(Options.OPTION_COALESCE_LOADS)))
+		{
+			Integer window = (Integer) options.get(Options.OPTION_COALESCING_WINDOW);
+			return findCoalescer.find(collection, id, window != null ? window : 0);
+		}
+
+		DBObject query = new BasicDBObject(Keywords.ID_KEY, id);
+
+		if (!directDecoding)
+			return collection.findOne(query);
+
+		// A negative limit returns a single batch and closes the cursor as findOne() does.
+
+		DBCursor resultCursor = collection.find(query).limit(-1);
+		resultCursor.setDecoderFactory(((DirectEObjectBuilder) builder).getDBDecoderFactory(resource, false));
+		return resultCursor.hasNext() ? resultCursor.next() : null;
+	}
+
+	/**
+	 * @param builder the builder to build the objects with
+	 * @param resource the resource being loaded
+	 * @param dbObjects the documents returned by the query
+	 * @param values receives the objects built as proxies
+	 * @return the latest time stamp of the documents, or URIConverter.NULL_TIME_STAMP if none has a time stamp
+	 */
+	private long buildEObjects(EObjectBuilder builder, Resource resource, Iterator<DBObject> dbObjects, InternalEList<EObject> values)
+	{
+		long timeStamp = URIConverter.NULL_TIME_STAMP;
+
+		while (dbObjects.hasNext())
+		{
+			DBObject dbObject = dbObjects.next();
+			timeStamp = Math.max(timeStamp, getTimeStamp(dbObject));
+			values.addUnique(builder.buildEObject(collection, dbObject, resource, true));
+		}
+
+		return timeStamp;
+	}
+
+	/**
+	 * Merges the result of a query into the collection built by a previous load of the same query.
+	 * An incremental refresh reads only the objects saved since the previous load: those already in
+	 * the collection are replaced, and the others are appended. The objects that were deleted, or
+	 * no longer match the query, are then found by reading only the ids of the whole result.
+	 * Otherwise the whole result has been read and replaces the contents of the collection.
+	 * 
+	 * @param builder the builder to build the objects with
+	 * @param resource the resource being refreshed
+	 * @param filter the filter of the query, not restricted by time stamp
+	 * @param dbObjects the documents returned by the query
+	 * @param eCollection the collection built by the previous load
+	 * @param incremental true if only the objects saved since the previous load were read
+	 * @return the latest time stamp of the documents read, or URIConverter.NULL_TIME_STAMP if none has a time stamp
+	 */
+	private long refreshCollection(EObjectBuilder builder, Resource resource, DBObject filter, DBCursor dbObjects, ECollection eCollection, boolean incremental)
+	{
+		InternalEList<EObject> values = (InternalEList<EObject>) eCollection.getValues();
+
+		if (!incremental)
+		{
+			values.clear();
+			return buildEObjects(builder, resource, dbObjects, values);
+		}
+
+		HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+
+		for (int i = 0; i < values.size(); i++)
+			indexes.put(getID(values.basicGet(i)), i);
+
+		long timeStamp = URIConverter.NULL_TIME_STAMP;
+
+		while (dbObjects.hasNext())
+		{
+			DBObject dbObject = dbObjects.next();
+			timeStamp = Math.max(timeStamp, getTimeStamp(dbObject));
+			EObject eObject = builder.buildEObject(collection, dbObject, resource, true);
+			String id = String.valueOf(dbObject.get(Keywords.ID_KEY));
+			Integer index = indexes.get(id);
+
+			if (index != null)
+				values.setUnique(index, eObject);
+			else
+			{
+				indexes.put(id, values.size());
+				values.addUnique(eObject);
+			}
+		}
+
+		HashSet<String> ids = new HashSet<String>();
+		DBCursor idCursor = collection.find(filter, new BasicDBObject(Keywords.ID_KEY, 1));
+
+		try
+		{
+			while (idCursor.hasNext())
+				ids.add(String.valueOf(idCursor.next().get(Keywords.ID_KEY)));
+		}
+		finally
+		{
+			idCursor.close();
+		}
+
+		for (int i = values.size() - 1; i >= 0; i--)
+		{
+			if (!ids.contains(getID(values.basicGet(i))))
+				values.remove(i);
+		}
+
+		return timeStamp;
+	}
+
+	/**
+	 * Puts the number of objects in the result of a query, or whether there is any, in the response
+	 * without reading the objects. The count is taken by the server; a match is found by reading
+	 * the id of at most one document. Both use the hint and the time limit of the query.
+	 * 
+	 * @param mongoQuery the query
+	 */
+	private void summarizeQuery(MongoQuery mongoQuery)
+	{
+		DBObject filter = mongoQuery.getFilter();
+		int skip = mongoQuery.getSkip() != null ? mongoQuery.getSkip() : 0;
+
+		if (Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_COUNT)))
+		{
+			long limit = mongoQuery.getLimit() != null ? Math.abs(mongoQuery.getLimit()) : 0;
+			response.put(Options.RESPONSE_COUNT, count(filter, limit, skip, mongoQuery.getHint(), mongoQuery.getMaxTimeMS()));
+		}
+
+		if (Boolean.TRUE.equals(options.get(Options.OPTION_QUERY_EXISTS)))
+		{
+			DBCursor cursor = collection.find(filter, new BasicDBObject(Keywords.ID_KEY, 1)).skip(skip).limit(1);
+
+			if (mongoQuery.getMaxTimeMS() != null)
+				cursor = cursor.addSpecial("$maxTimeMS", mongoQuery.getMaxTimeMS());
+
+			if (mongoQuery.getHint() != null)
+				cursor = cursor.hint(mongoQuery.getHint());
+
+			try
+			{
+				response.put(Options.RESPONSE_EXISTS, cursor.hasNext());
+			}
+			finally
+			{
+				cursor.close();
+			}
+		}
+	}
+
+	/**
+	 * Counts the documents matching a filter with the count command, which unlike
+	 * DBCollection.getCount() takes the index hint and the time limit of the query.
+	 * 
+	 * @param filter the filter, or null to count every document
+	 * @param limit the maximum number of documents to count, or 0 to count all of them
+	 * @param skip the number of matching documents to skip
+	 * @param hint the index to use, or null
+	 * @param maxTimeMS the time limit of the count in milliseconds, or null
+	 * @return the number of documents
+	 */
+	private long count(DBObject filter, long limit, int skip, DBObject hint, Long maxTimeMS)
+	{
+		BasicDBObject command = new BasicDBObject("count", collection.getName());
+
+		if (filter != null)
+			command.put("query", filter);
+
+		if (limit > 0)
+			command.put("limit", limit);
+
+		if (skip > 0)
+			command.put("skip", skip);
+
+		if (hint != null)
+			command.put("hint", hint);
+
+		if (maxTimeMS != null)
+			command.put("maxTimeMS", maxTimeMS);
+
+		CommandResult result = collection.getDB().command(command, collection.getOptions(), collection.getReadPreference());
+
+		if (!result.ok())
+		{
+			// As with DBCollection.getCount(), a collection that does not exist has no documents
+
+			String errorMessage = result.getErrorMessage();
+
+			if ("ns does not exist".equals(errorMessage) || "ns missing".equals(errorMessage))
+				return 0;
+
+			result.throwOnError();
+		}
+
+		return result.getLong("n");
+	}
+
+	/**
+	 * @param eObject an object of the result of a query
+	 * @return the id of the document of the object as it appears in the URI of the object
+	 */
+	private static String getID(EObject eObject)
+	{
+		return EcoreUtil.getURI(eObject).trimFragment().lastSegment();
+	}
+
+	/**
+	 * @param dbObject a document read from MongoDB
+	 * @return the time stamp of the document, or URIConverter.NULL_TIME_STAMP if it has none
+	 */
+	private static long getTimeStamp(DBObject dbObject)
+	{
+		Object timeStamp = dbObject.get(Keywords.TIME_STAMP_KEY);
+		return timeStamp instanceof Number ? ((Number) timeStamp).longValue() : URIConverter.NULL_TIME_STAMP;
+	}
+
+	/**
+	 * Replaces the parameter placeholders of a query with the values bound to them. The query
+	 * built by the query engine is not modified; the documents and lists holding a placeholder are
+	 * copied.
+	 * 
+	 * @param value a value of the query
+	 * @param parameters the values bound to the parameters keyed by parameter name, or null
+	 * @return the value with its placeholders replaced
+	 * @throws IOException if a placeholder names a parameter that is not bound
+	 */
+	private static Object bindParameters(Object value, Map<?, ?> parameters) throws IOException
+	{
+		if (value instanceof List<?>)
+		{
+			List<?> list = (List<?>) value;
+			List<Object> boundList = null;
+
+			for (int i = 0; i < list.size(); i++)
+			{
+				Object element = list.get(i);
+				Object boundElement = bindParameters(element, parameters);
+
+				if (boundElement != element && boundList == null)
+				{
+					boundList = value instanceof BasicDBList ? new BasicDBList() : new ArrayList<Object>(list.size());
+					boundList.addAll(list.subList(0, i));
+				}
+
+				if (boundList != null)
+					boundList.add(boundElement);
+			}
+
+			return boundList != null ? boundList : value;
+		}
+
+		if (value instanceof DBObject)
+		{
+			DBObject dbObject = (DBObject) value;
+			Object parameterName = dbObject.get(Keywords.PARAMETER_KEY);
+
+			if (parameterName != null && dbObject.keySet().size() == 1)
+			{
+				if (parameters == null || !parameters.containsKey(parameterName))
+					throw new IOException("The query parameter '" + parameterName + "' is not bound");
+
+				return parameters.get(parameterName);
+			}
+
+			DBObject boundDBObject = null;
+
+			for (String key : dbObject.keySet())
+			{
+				Object field = dbObject.get(key);
+				Object boundField = bindParameters(field, parameters);
+
+				if (boundField != field && boundDBObject == null)
+				{
+					boundDBObject = new BasicDBObject();
+
+					for (String copiedKey : dbObject.keySet())
+					{
+						if (copiedKey.equals(key))
+							break;
+
+						boundDBObject.put(copiedKey, dbObject.get(copiedKey));
+					}
+				}
+
+				if (boundDBObject != null)
+					boundDBObject.put(key, boundField);
+			}
+
+			return boundDBObject != null ? boundDBObject : value;
+		}
+
+		return value;
+	}
+
 	@Override
 	public int read() throws IOException
 	{
@@ -157,12 +686,16 @@ public class MongoInputStream extends InputStream implements URIConverter.Loadab
 		return 0;
 	}
 
+	private static final int DEFAULT_READ_AHEAD = 101;
+
 	private URI uri;
 	private Map<?, ?> options;
 	private Map<Object, Object> response;
 	private ConverterService converterService;
 	private QueryEngine queryEngine;
 	private DBCollection collection;
-	private Map<String, EClass> eClassCache = new HashMap<String, EClass>();
+	private EClassCache eClassCache;
 	private EObjectBuilderFactory builderFactory;
+	private FindCoalescer findCoalescer;
+	private DocumentCache documentCache;
 }
@@ -14,7 +14,10 @@ package org.eclipselabs.mongoemf.streams;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import org.eclipse.emf.common.util.EList;
 import org.eclipse.emf.common.util.URI;
@@ -29,16 +32,23 @@ import org.eclipselabs.emodeling.ECollection;
 import org.eclipselabs.emodeling.EReferenceCollection;
 import org.eclipselabs.emodeling.EmodelingFactory;
 import org.eclipselabs.emongo.MongoIdFactory;
+import org.eclipselabs.mongoemf.BulkWriter;
 import org.eclipselabs.mongoemf.ConverterService;
 import org.eclipselabs.mongoemf.DBObjectBuilder;
 import org.eclipselabs.mongoemf.DBObjectBuilderFactory;
+import org.eclipselabs.mongoemf.DirectDBObjectBuilder;
+import org.eclipselabs.mongoemf.DocumentCache;
+import org.eclipselabs.mongoemf.FeatureDBObjectBuilder;
 import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBCollection;
+import com.mongodb.DBEncoder;
 import com.mongodb.DBObject;
 import com.mongodb.WriteConcern;
+import com.mongodb.WriteResult;
 
 /**
  * @author bhunt
@@ -47,6 +57,11 @@ import com.mongodb.WriteConcern;
 public class MongoOutputStream extends ByteArrayOutputStream implements URIConverter.Saveable
 {
 	public MongoOutputStream(ConverterService converterService, DBObjectBuilderFactory builderFactory, DBCollection collection, URI uri, Map<String, MongoIdFactory> idProviders, Map<?, ?> options, Map<Object, Object> response)
+	{
+		this(converterService, builderFactory, collection, uri, idProviders, options, response, null);
+	}
+
+	MongoOutputStream(ConverterService converterService, DBObjectBuilderFactory builderFactory, DBCollection collection, URI uri, Map<String, MongoIdFactory> idProviders, Map<?, ?> options, Map<Object, Object> response, DocumentCache documentCache)
 	{
 		if (converterService == null)
 			throw new NullPointerException("The converter service must not be null");
@@ -61,6 +76,7 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 		this.options = options;
 		this.response = response;
 		this.builderFactory = builderFactory;
+		this.documentCache = documentCache;
 	}
 
 	@Override
@@ -107,12 +123,29 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 
 		builder = builderFactory.createBuilder(converterService, uriHandler, serializeDefaultAttributeValues);
 
+		// When direct encoding is requested, the objects are written by the builder's encoder straight
+		// into the BSON sent to MongoDB instead of being built as DBObjects first.
+
+		if (Boolean.TRUE.equals(options.get(Options.OPTION_DIRECT_ENCODING)) && builder instanceof DirectDBObjectBuilder)
+			encoder = ((DirectDBObjectBuilder) builder).getDBEncoderFactory().create();
+
 		if (resource.getContents().size() > 1 || resource.getContents().get(0) instanceof ECollection)
 			saveMultipleObjects();
 		else
 			saveSingleObject(id);
 	}
 
+	/**
+	 * Discards the document of a saved object from the document cache.
+	 * 
+	 * @param id the id of the document
+	 */
+	private void invalidate(Object id)
+	{
+		if (documentCache != null && id != null)
+			documentCache.invalidate(collection, id);
+	}
+
 	@Override
 	public void saveResource(Resource resource)
 	{
@@ -128,44 +161,44 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 		else
 			contents = resource.getContents();
 
-		ArrayList<DBObject> dbObjects = new ArrayList<DBObject>(contents.size());
 		long timeStamp = System.currentTimeMillis();
 		response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, timeStamp);
 
-		Boolean useIdAttributeAsPrimaryKey = (Boolean) options.get(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY);
+		boolean useIdAttributeAsPrimaryKey = Boolean.TRUE.equals(options.get(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY));
+		Integer batchSizeOption = (Integer) options.get(Options.OPTION_BATCH_SIZE);
+		int batchSize = batchSizeOption != null && batchSizeOption > 0 ? batchSizeOption : Math.max(contents.size(), 1);
+		boolean ordered = !Boolean.FALSE.equals(options.get(Options.OPTION_ORDERED));
+		boolean upsert = Boolean.TRUE.equals(options.get(Options.OPTION_UPSERT));
 
-		for (EObject eObject : contents)
-		{
-			DBObject dbObject = builder.buildDBObject(eObject);
-			dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
-
-			if (useIdAttributeAsPrimaryKey != null && useIdAttributeAsPrimaryKey)
-			{
-				EAttribute idAttribute = eObject.eClass().getEIDAttribute();
+		// The objects are written in batches. They are only turned into proxies once all of them have
+		// been written, so the resource is left as it was if a batch cannot be written.
 
-				if (idAttribute != null)
-					dbObject.put(Keywords.ID_KEY, eObject.eGet(idAttribute));
-			}
+		final ArrayList<EObject> writtenObjects = new ArrayList<EObject>(contents.size());
+		final ArrayList<Object> writtenIds = new ArrayList<Object>(contents.size());
 
-			dbObjects.add(dbObject);
-		}
+		BatchWriter batchWriter = new BatchWriter(collection, (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN), encoder, ordered, upsert);
 
-		WriteConcern writeConcern = (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN);
+		batchWriter.write(contents.iterator(), builder, batchSize, timeStamp, useIdAttributeAsPrimaryKey, new BulkWriter.Listener()
+		{
+			@Override
+			public void batchWritten(List<EObject> eObjects, List<Object> ids)
+			{
+				for (Object id : ids)
+					invalidate(id);
 
-		if (writeConcern == null)
-			collection.insert(dbObjects);
-		else
-			collection.insert(dbObjects, writeConcern);
+				writtenObjects.addAll(eObjects);
+				writtenIds.addAll(ids);
+			}
+		});
 
 		URI baseURI = resource.getURI().trimSegments(1);
-		InternalEObject[] eObjects = contents.toArray(new InternalEObject[contents.size()]);
 		EReferenceCollection eCollection = EmodelingFactory.eINSTANCE.createEReferenceCollection();
 		InternalEList<EObject> values = (InternalEList<EObject>) eCollection.getValues();
 
-		for (int i = 0; i < dbObjects.size(); i++)
+		for (int i = 0; i < writtenObjects.size(); i++)
 		{
-			InternalEObject internalEObject = eObjects[i];
-			internalEObject.eSetProxyURI(baseURI.appendSegment(dbObjects.get(i).get(Keywords.ID_KEY).toString()).appendFragment("/"));
+			InternalEObject internalEObject = (InternalEObject) writtenObjects.get(i);
+			internalEObject.eSetProxyURI(baseURI.appendSegment(writtenIds.get(i).toString()).appendFragment("/"));
 			internalEObject.eAdapters().clear();
 			values.addUnique(internalEObject);
 		}
@@ -176,18 +209,27 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 
 	private void saveSingleObject(Object id) throws IOException
 	{
-		// Build a MongoDB object from the EMF object.
-
 		EObject eObject = resource.getContents().get(0);
-		DBObject dbObject = builder.buildDBObject(eObject);
 
 		// The timestamp needs to be persisted with the object, and set in the response
 
 		long timeStamp = System.currentTimeMillis();
-		dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
 		response.put(URIConverter.RESPONSE_TIME_STAMP_PROPERTY, timeStamp);
 		WriteConcern writeConcern = (WriteConcern) options.get(Options.OPTION_WRITE_CONCERN);
 
+		// If the changes to the object have been tracked, try writing just the changed fields.
+
+		if (id != null && saveChanges(eObject, id, timeStamp, writeConcern))
+		{
+			invalidate(id);
+			return;
+		}
+
+		// Build a MongoDB object from the EMF object.
+
+		DBObject dbObject = buildDBObject(eObject);
+		dbObject.put(Keywords.TIME_STAMP_KEY, timeStamp);
+
 		if (id == null)
 		{
 			// The id was not specified in the URI, so we can let MongoDB generate the id or use the value
@@ -205,7 +247,9 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 				dbObject.put(Keywords.ID_KEY, id);
 			}
 
-			if (writeConcern == null)
+			if (encoder != null)
+				collection.insert(new DBObject[] { dbObject }, writeConcern != null ? writeConcern : collection.getWriteConcern(), encoder);
+			else if (writeConcern == null)
 				collection.insert(dbObject);
 			else
 				collection.insert(dbObject, writeConcern);
@@ -235,11 +279,115 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 
 			dbObject.put(Keywords.ID_KEY, id);
 
-			if (writeConcern == null)
+			if (encoder != null)
+				collection.update(new BasicDBObject(Keywords.ID_KEY, id), dbObject, true, false, writeConcern != null ? writeConcern : collection.getWriteConcern(), encoder);
+			else if (writeConcern == null)
 				collection.save(dbObject);
 			else
 				collection.save(dbObject, writeConcern);
 		}
+
+		invalidate(id);
+
+		// The whole document has been saved, so the changes tracked so far have been written.
+
+		ChangeTracker changeTracker = ChangeTracker.getChangeTracker(eObject);
+
+		if (changeTracker != null)
+			changeTracker.reset(collection, id);
+		else if (Boolean.TRUE.equals(options.get(Options.OPTION_TRACK_CHANGES)))
+			eObject.eAdapters().add(new ChangeTracker(collection, id));
+	}
+
+	/**
+	 * Writes the fields changed since the object was loaded or last saved as a $set / $unset update.
+	 * 
+	 * @param eObject the EMF object to save
+	 * @param id the id of the document
+	 * @param timeStamp the time stamp to persist with the object
+	 * @param writeConcern the write concern requested by the client, or null
+	 * @return true if the changes were saved; false if the whole document must be saved
+	 */
+	private boolean saveChanges(EObject eObject, Object id, long timeStamp, WriteConcern writeConcern)
+	{
+		ChangeTracker changeTracker = ChangeTracker.getChangeTracker(eObject);
+
+		if (changeTracker == null || !changeTracker.isTracking(collection, id) || !(builder instanceof FeatureDBObjectBuilder))
+			return false;
+
+		TreeMap<String, ChangeTracker.Change> changes = changeTracker.getChanges(eObject);
+
+		if (changes == null)
+			return false;
+
+		BasicDBObject setFields = new BasicDBObject();
+		BasicDBObject unsetFields = new BasicDBObject();
+		BasicDBObject pushFields = new BasicDBObject();
+
+		for (Entry<String, ChangeTracker.Change> entry : changes.entrySet())
+		{
+			ChangeTracker.Change change = entry.getValue();
+
+			if (change.firstAppendedIndex != -1)
+			{
+				// Only the objects appended to the list are written.
+
+				int size = ((List<?>) change.eObject.eGet(change.feature, false)).size();
+				ArrayList<Object> values = new ArrayList<Object>(size - change.firstAppendedIndex);
+
+				for (int i = change.firstAppendedIndex; i < size; i++)
+					values.add(((FeatureDBObjectBuilder) builder).buildFeatureValue(change.eObject, change.feature, i));
+
+				pushFields.put(entry.getKey(), new BasicDBObject("$each", values));
+				continue;
+			}
+
+			BasicDBObject value = new BasicDBObject(1);
+			((FeatureDBObjectBuilder) builder).buildFeature(change.eObject, value, change.feature);
+
+			if (value.containsField(change.feature.getName()))
+				setFields.put(entry.getKey(), value.get(change.feature.getName()));
+			else
+				unsetFields.put(entry.getKey(), 1);
+		}
+
+		setFields.put(Keywords.TIME_STAMP_KEY, timeStamp);
+		BasicDBObject update = new BasicDBObject("$set", setFields);
+
+		if (!unsetFields.isEmpty())
+			update.put("$unset", unsetFields);
+
+		if (!pushFields.isEmpty())
+			update.put("$push", pushFields);
+
+		// The update does not insert the document if it no longer exists. The whole document is saved
+		// instead, which is decided from the number of documents updated, so the update is always
+		// acknowledged.
+
+		WriteConcern updateWriteConcern = writeConcern != null ? writeConcern : collection.getWriteConcern();
+
+		if (!updateWriteConcern.callGetLastError())
+			updateWriteConcern = WriteConcern.SAFE;
+
+		WriteResult result = collection.update(new BasicDBObject(Keywords.ID_KEY, id), update, false, false, updateWriteConcern);
+
+		if (result.getN() == 0)
+			return false;
+
+		changeTracker.reset(collection, id);
+		return true;
+	}
+
+	/**
+	 * Builds the DBObject to save for the EMF object. With direct encoding, the DBObject only holds
+	 * the EMF object until the encoder writes it.
+	 * 
+	 * @param eObject the EMF object to save
+	 * @return the DBObject to save
+	 */
+	private DBObject buildDBObject(EObject eObject)
+	{
+		return encoder != null ? ((DirectDBObjectBuilder) builder).buildDeferredDBObject(eObject) : builder.buildDBObject(eObject);
 	}
 
 	private ConverterService converterService;
@@ -250,5 +398,7 @@ public class MongoOutputStream extends ByteArrayOutputStream implements URIConve
 	private Map<Object, Object> response;
 	private URI uri;
 	private DBObjectBuilder builder;
+	private DBEncoder encoder;
 	private Map<String, MongoIdFactory> idFactories;
+	private DocumentCache documentCache;
 }
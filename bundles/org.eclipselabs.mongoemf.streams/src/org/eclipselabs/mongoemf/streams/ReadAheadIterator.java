@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.streams;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Reads the documents of a cursor on a background thread so that the next batch is fetched from
+ * MongoDB while the documents already read are being built into EMF objects. At most capacity
+ * documents are read ahead of the caller. The cursor must not be used by anyone else once it has
+ * been passed to this iterator, and is closed when the last document has been read or the
+ * iterator is closed.
+ *
+ * This class is not thread safe.
+ *
+ * @author bhunt
+ */
+final class ReadAheadIterator implements Iterator<DBObject>
+{
+	/**
+	 * @param cursor the cursor to read
+	 * @param capacity the maximum number of documents to read ahead of the caller
+	 */
+	ReadAheadIterator(final DBCursor cursor, int capacity)
+	{
+		queue = new ArrayBlockingQueue<Object>(Math.max(capacity, 1));
+		reader = new Thread("MongoEMF read-ahead " + cursor.getCollection().getFullName())
+		{
+			@Override
+			public void run()
+			{
+				Object last = END;
+
+				try
+				{
+					while (cursor.hasNext())
+						queue.put(cursor.next());
+				}
+				catch (InterruptedException e)
+				{
+					return;
+				}
+				catch (RuntimeException e)
+				{
+					last = new Failure(e);
+				}
+				catch (Error e)
+				{
+					last = new Failure(e);
+				}
+				finally
+				{
+					cursor.close();
+				}
+
+				try
+				{
+					queue.put(last);
+				}
+				catch (InterruptedException e)
+				{}
+			}
+		};
+
+		reader.setDaemon(true);
+		reader.start();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (next == null)
+		{
+			try
+			{
+				next = queue.take();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				throw new MongoException("Interrupted while reading ahead");
+			}
+		}
+
+		if (next instanceof Failure)
+		{
+			Throwable cause = ((Failure) next).cause;
+
+			if (cause instanceof Error)
+				throw (Error) cause;
+
+			throw (RuntimeException) cause;
+		}
+
+		return next != END;
+	}
+
+	@Override
+	public DBObject next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		DBObject dbObject = (DBObject) next;
+		next = null;
+		return dbObject;
+	}
+
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops reading ahead. The cursor is closed by the background thread.
+	 */
+	void close()
+	{
+		reader.interrupt();
+		queue.clear();
+	}
+
+	/**
+	 * The failure of the background thread, handed to the caller in place of the next document.
+	 */
+	private static final class Failure
+	{
+		Failure(Throwable cause)
+		{
+			this.cause = cause;
+		}
+
+		final Throwable cause;
+	}
+
+	private static final Object END = new Object();
+
+	private final BlockingQueue<Object> queue;
+	private final Thread reader;
+	private Object next;
+}
@@ -15,11 +15,12 @@ import org.eclipselabs.mongoemf.junit.tests.TestMongoCursor;
 import org.eclipselabs.mongoemf.junit.tests.TestMongoEmfAttributes;
 import org.eclipselabs.mongoemf.junit.tests.TestMongoEmfBasics;
 import org.eclipselabs.mongoemf.junit.tests.TestMongoEmfReferences;
+import org.eclipselabs.mongoemf.junit.tests.TestObjectBuilders;
 import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
 @RunWith(Suite.class)
-@SuiteClasses({ TestMongoEmfBasics.class, TestMongoEmfAttributes.class, TestMongoEmfReferences.class, TestMongoCursor.class })
+@SuiteClasses({ TestMongoEmfBasics.class, TestMongoEmfAttributes.class, TestMongoEmfReferences.class, TestMongoCursor.class, TestObjectBuilders.class })
 public class TestMongoEmfSuite
 {}
@@ -158,4 +158,44 @@ public class TestMongoCursor extends TestHarness
 		assertFalse(iterator.hasNext());
 		assertTrue(pendingTargets.isEmpty());
 	}
+
+	@Test
+	public void testPagedIteration() throws IOException
+	{
+		// Setup : Store several target objects to the database.
+
+		int numberTargets = 5;
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit" + i);
+			saveObject(targetObject);
+		}
+
+		// Test: Query the database to return a cursor with a page size of two
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_CURSOR, Boolean.TRUE);
+		resourceSet.getLoadOptions().put(Options.OPTION_CURSOR_PAGE_SIZE, 2);
+		Resource resource = resourceSet.getResource(queryURI, true);
+
+		// Verify: Make sure the resource set never holds more than one page of objects besides the query resource
+
+		MongoCursor cursor = (MongoCursor) resource.getContents().get(0);
+		assertThat(cursor.getPageSize(), is(2));
+
+		Iterator<EObject> iterator = cursor.iterator();
+		int count = 0;
+
+		while (iterator.hasNext())
+		{
+			EObject eObject = iterator.next();
+			assertThat(eObject.eResource().getResourceSet(), is(resourceSet));
+			assertTrue(resourceSet.getResources().size() <= 3);
+			count++;
+		}
+
+		assertThat(count, is(numberTargets));
+	}
 }
@@ -25,10 +25,16 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.bson.types.ObjectId;
 import org.eclipse.emf.common.util.URI;
@@ -37,14 +43,21 @@ import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.util.InternalEList;
 import org.eclipse.emf.ecore.xmi.XMIResource;
 import org.eclipse.emf.ecore.xmi.XMLResource;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceFactoryImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMIResourceImpl;
 import org.eclipse.emf.ecore.xmi.impl.XMLResourceFactoryImpl;
 import org.eclipselabs.emodeling.ECollection;
+import org.eclipselabs.eunit.junit.utils.ServiceLocator;
+import org.eclipselabs.mongoemf.BulkLoader;
+import org.eclipselabs.mongoemf.BulkWriter;
+import org.eclipselabs.mongoemf.Keywords;
 import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
+import org.eclipselabs.mongoemf.PrefetchAdapter;
 import org.eclipselabs.mongoemf.junit.model.ETypes;
 import org.eclipselabs.mongoemf.junit.model.ModelFactory;
 import org.eclipselabs.mongoemf.junit.model.ModelPackage;
@@ -56,6 +69,9 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
 import com.mongodb.WriteConcern;
 
 /**
@@ -67,6 +83,12 @@ public class TestMongoEmfBasics extends TestHarness
 	@Rule
 	public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
+	@Rule
+	public ServiceLocator<BulkWriter> bulkWriterLocator = new ServiceLocator<BulkWriter>(BulkWriter.class);
+
+	@Rule
+	public ServiceLocator<BulkLoader> bulkLoaderLocator = new ServiceLocator<BulkLoader>(BulkLoader.class);
+
 	@Test
 	public void testGetID() throws IOException
 	{
@@ -207,6 +229,184 @@ public class TestMongoEmfBasics extends TestHarness
 		EChecker.checkObject(eTypes, createResourceSet());
 	}
 
+	@Test
+	public void testTypesWithDirectEncoding() throws IOException
+	{
+		// Setup
+
+		ETypes eTypes = ModelFactory.eINSTANCE.createETypes();
+		eTypes.setEBigDecimal(BigDecimal.ONE);
+		eTypes.setEBigInteger(new BigInteger(2, new Random()));
+		eTypes.setEBoolean(true);
+		eTypes.setEByte((byte) 3);
+		eTypes.setEByteArray(new byte[] { 1, 2 });
+		eTypes.setEChar('j');
+		eTypes.setEDate(new Date());
+		eTypes.setEDouble(1.0);
+		eTypes.setEFloat(1.0f);
+		eTypes.setEInt(1);
+		eTypes.setELong(1L);
+		eTypes.setEShort((short) 1);
+		eTypes.setEString("j");
+		eTypes.getUris().add(URI.createURI("mongodb://localhost/db/collection/id1"));
+		eTypes.getUris().add(URI.createURI("mongodb://localhost/db/collection/id2"));
+
+		HashMap<String, Object> options = new HashMap<String, Object>(1);
+		options.put(Options.OPTION_DIRECT_ENCODING, Boolean.TRUE);
+
+		// Test
+
+		saveObject(eTypes, createCollectionURI(eTypes.eClass()), options);
+
+		// Verify
+
+		assertThat(eTypes.eResource().getURI().segmentCount(), is(3));
+		assertThat(eTypes.eResource().getURI().segment(2), is(notNullValue()));
+		EChecker.checkObject(eTypes, createResourceSet());
+	}
+
+	@Test
+	public void testUpdateWithDirectEncoding() throws IOException
+	{
+		// Setup : Create a primary object with an embedded object and save it with an arbitrary ID
+
+		String id = "ID";
+		HashMap<String, Object> options = new HashMap<String, Object>(1);
+		options.put(Options.OPTION_DIRECT_ENCODING, Boolean.TRUE);
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("embedded");
+		primaryObject.getMultipleContainmentReferenceNoProxies().add(targetObject);
+
+		saveObject(primaryObject, createObjectURI(primaryObject.eClass(), id), options);
+
+		// Test : Update the object and store it back to MongoDB
+
+		primaryObject.setName("updated");
+		primaryObject.eResource().save(options);
+
+		// Verify : Check that the object was stored correctly, and that is has the ID we specified.
+
+		PrimaryObject actual = EChecker.checkObject(primaryObject, createResourceSet());
+		assertThat(EChecker.getID(actual), is(id));
+	}
+
+	@Test
+	public void testUpdateWithChangeTracking() throws IOException
+	{
+		// Setup : Create a primary object with embedded objects and save it with change tracking
+
+		String id = "ID";
+		HashMap<String, Object> options = new HashMap<String, Object>(1);
+		options.put(Options.OPTION_TRACK_CHANGES, Boolean.TRUE);
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+		TargetObject singleObject = ModelFactory.eINSTANCE.createTargetObject();
+		singleObject.setSingleAttribute("single");
+		primaryObject.setSingleContainmentReferenceNoProxies(singleObject);
+		TargetObject multipleObject = ModelFactory.eINSTANCE.createTargetObject();
+		multipleObject.setSingleAttribute("multiple");
+		primaryObject.getMultipleContainmentReferenceNoProxies().add(multipleObject);
+
+		saveObject(primaryObject, createObjectURI(primaryObject.eClass(), id), options);
+
+		DBObject query = new BasicDBObject(Keywords.ID_KEY, id);
+		getCollection(primaryObject.eClass()).update(query, new BasicDBObject("$set", new BasicDBObject("untracked", "kept")));
+
+		// Test : Update attributes of the object and of its embedded objects and store it back to MongoDB
+
+		primaryObject.setName("updated");
+		singleObject.setSingleAttribute("single updated");
+		multipleObject.setSingleAttribute("multiple updated");
+		primaryObject.eResource().save(options);
+
+		// Verify : Check that the object was stored correctly, and that is has the ID we specified.
+		// The field changed only in MongoDB is kept, so only the changed fields were written.
+
+		PrimaryObject actual = EChecker.checkObject(primaryObject, createResourceSet());
+		assertThat(EChecker.getID(actual), is(id));
+		assertThat(getCollection(primaryObject.eClass()).findOne(query).get("untracked"), is((Object) "kept"));
+	}
+
+	@Test
+	public void testStructuralUpdateWithChangeTracking() throws IOException
+	{
+		// Setup : Create a primary object with embedded objects, save it, and load it with change tracking
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+
+		for (int i = 0; i < 2; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("embedded " + i);
+			primaryObject.getMultipleContainmentReferenceNoProxies().add(targetObject);
+		}
+
+		saveObject(primaryObject);
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_TRACK_CHANGES, Boolean.TRUE);
+		PrimaryObject loadedObject = (PrimaryObject) resourceSet.getResource(primaryObject.eResource().getURI(), true).getContents().get(0);
+
+		DBObject query = new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(loadedObject.eResource().getURI()));
+		getCollection(primaryObject.eClass()).update(query, new BasicDBObject("$set", new BasicDBObject("untracked", "dropped")));
+
+		// Test : Remove an embedded object and change an attribute, then store the object back to MongoDB
+
+		loadedObject.getMultipleContainmentReferenceNoProxies().remove(0);
+		loadedObject.setName("updated");
+		loadedObject.eResource().save(null);
+
+		// Verify : Check that the object was stored correctly. Removing an embedded object moves the
+		// objects after it, so the whole document was saved and the field set only in MongoDB is gone.
+
+		EChecker.checkObject(loadedObject, createResourceSet());
+		assertThat(getCollection(primaryObject.eClass()).findOne(query).containsField("untracked"), is(false));
+	}
+
+	@Test
+	public void testAppendWithChangeTracking() throws IOException
+	{
+		// Setup : Create a primary object with an embedded object, save it, and load it with change tracking
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("existing");
+		primaryObject.getMultipleContainmentReferenceNoProxies().add(targetObject);
+		saveObject(primaryObject);
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_TRACK_CHANGES, Boolean.TRUE);
+		PrimaryObject loadedObject = (PrimaryObject) resourceSet.getResource(primaryObject.eResource().getURI(), true).getContents().get(0);
+
+		DBObject query = new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(loadedObject.eResource().getURI()));
+		getCollection(primaryObject.eClass()).update(query, new BasicDBObject("$set", new BasicDBObject("untracked", "kept")));
+
+		// Test : Append embedded objects, change one of the new objects, and store the object back to MongoDB
+
+		for (int i = 0; i < 3; i++)
+		{
+			TargetObject appendedObject = ModelFactory.eINSTANCE.createTargetObject();
+			appendedObject.setSingleAttribute("appended " + i);
+			loadedObject.getMultipleContainmentReferenceNoProxies().add(appendedObject);
+		}
+
+		loadedObject.getMultipleContainmentReferenceNoProxies().get(3).setSingleAttribute("appended and changed");
+		loadedObject.eResource().save(null);
+
+		// Verify : Check that the object was stored correctly, and that the field changed only in
+		// MongoDB is kept, so the new objects were pushed rather than the whole document saved.
+
+		PrimaryObject actual = EChecker.checkObject(loadedObject, createResourceSet());
+		assertThat(actual.getMultipleContainmentReferenceNoProxies().size(), is(4));
+		assertThat(getCollection(primaryObject.eClass()).findOne(query).get("untracked"), is((Object) "kept"));
+	}
+
 	@Test
 	public void testTargetObjectWithObjectId() throws IOException
 	{
@@ -400,6 +600,452 @@ public class TestMongoEmfBasics extends TestHarness
 		}
 	}
 
+	@Test
+	public void testBatchUpsertInSmallBatches() throws IOException
+	{
+		// Setup : Create several primary objects with ids that are already stored in the database
+
+		ResourceSet resourceSet = createResourceSet();
+		Resource resource = resourceSet.createResource(createCollectionURI(ModelPackage.Literals.PRIMARY_OBJECT));
+		int numberTargets = 10;
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY, Boolean.TRUE);
+		options.put(Options.OPTION_BATCH_SIZE, 3);
+		options.put(Options.OPTION_ORDERED, Boolean.FALSE);
+		options.put(Options.OPTION_UPSERT, Boolean.TRUE);
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+			primaryObject.setIdAttribute("Object " + i);
+			primaryObject.setName("junit " + i);
+			resource.getContents().add(primaryObject);
+		}
+
+		resource.save(options);
+		resource.getContents().clear();
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+			primaryObject.setIdAttribute("Object " + i);
+			primaryObject.setName("junit " + i);
+			resource.getContents().add(primaryObject);
+		}
+
+		// Test : Store the objects in the database again
+
+		resource.save(options);
+
+		// Verify : The objects were replaced and the resource contains proxies to all of them in order
+
+		assertThat(getCollection(ModelPackage.Literals.PRIMARY_OBJECT).getCount(), is((long) numberTargets));
+
+		ECollection eCollection = (ECollection) resource.getContents().get(0);
+		assertThat(eCollection.getValues().size(), is(numberTargets));
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			PrimaryObject primaryObject = (PrimaryObject) eCollection.getValues().get(i);
+			assertThat(EChecker.getID(primaryObject), is("Object " + i));
+			assertThat(primaryObject.getName(), is("junit " + i));
+		}
+	}
+
+	@Test
+	public void testBatchSaveFailure() throws IOException
+	{
+		// Setup : Create primary objects where the last one has the same id as the first one, so
+		// that the last batch cannot be written
+
+		ResourceSet resourceSet = createResourceSet();
+		Resource resource = resourceSet.createResource(createCollectionURI(ModelPackage.Literals.PRIMARY_OBJECT));
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_USE_ID_ATTRIBUTE_AS_PRIMARY_KEY, Boolean.TRUE);
+		options.put(Options.OPTION_BATCH_SIZE, 1);
+		options.put(Options.OPTION_WRITE_CONCERN, WriteConcern.SAFE);
+
+		for (int i = 0; i < 3; i++)
+		{
+			PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+			primaryObject.setIdAttribute("Object " + i % 2);
+			primaryObject.setName("junit " + i);
+			resource.getContents().add(primaryObject);
+		}
+
+		// Test : Store the objects in the database
+
+		MongoException failure = null;
+
+		try
+		{
+			resource.save(options);
+		}
+		catch (MongoException e)
+		{
+			failure = e;
+		}
+
+		// Verify : The save failed and the resource still contains all of the objects, none of which
+		// were turned into proxies
+
+		assertThat(failure, is(notNullValue()));
+		assertThat(resource.getContents().size(), is(3));
+
+		for (int i = 0; i < 3; i++)
+		{
+			PrimaryObject primaryObject = (PrimaryObject) resource.getContents().get(i);
+			assertFalse(primaryObject.eIsProxy());
+			assertThat(primaryObject.getName(), is("junit " + i));
+		}
+	}
+
+	@Test
+	public void testBulkWriter() throws IOException
+	{
+		// Setup : Create several target objects without adding them to a resource
+
+		int numberTargets = 10;
+		ArrayList<TargetObject> targetObjects = new ArrayList<TargetObject>();
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			targetObjects.add(targetObject);
+		}
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_BATCH_SIZE, 4);
+
+		final ArrayList<Object> ids = new ArrayList<Object>();
+		final ArrayList<Integer> batchSizes = new ArrayList<Integer>();
+
+		// Test : Write the objects to the database in batches
+
+		long count = bulkWriterLocator.getService().write(createCollectionURI(ModelPackage.Literals.TARGET_OBJECT), targetObjects.iterator(), options, new BulkWriter.Listener()
+		{
+			@Override
+			public void batchWritten(List<EObject> eObjects, List<Object> batchIds)
+			{
+				batchSizes.add(eObjects.size());
+				ids.addAll(batchIds);
+			}
+		});
+
+		// Verify : The objects were written in three batches and can be loaded by the ids reported
+
+		assertThat(count, is((long) numberTargets));
+		assertThat(batchSizes.size(), is(3));
+		assertThat(batchSizes.get(2), is(2));
+		assertThat(ids.size(), is(numberTargets));
+		assertThat(getCollection(ModelPackage.Literals.TARGET_OBJECT).getCount(), is((long) numberTargets));
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			ResourceSet resourceSet = createResourceSet();
+			Resource resource = resourceSet.getResource(createObjectURI(ModelPackage.Literals.TARGET_OBJECT, ids.get(i)), true);
+			assertThat(((TargetObject) resource.getContents().get(0)).getSingleAttribute(), is("junit " + i));
+		}
+	}
+
+	@Test
+	public void testBulkLoader() throws IOException
+	{
+		// Setup : Store several target objects in the database
+
+		int numberTargets = 3;
+		ArrayList<URI> uris = new ArrayList<URI>();
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			saveObject(targetObject);
+			uris.add(targetObject.eResource().getURI());
+		}
+
+		uris.add(createObjectURI(ModelPackage.Literals.TARGET_OBJECT, new ObjectId()));
+
+		// Test : Load the objects with a single call
+
+		ResourceSet resourceSet = createResourceSet();
+		Map<URI, Resource> resources = bulkLoaderLocator.getService().load(resourceSet, uris, null);
+
+		// Verify : Each object that exists was loaded into its own resource
+
+		assertThat(resources.size(), is(numberTargets));
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			Resource resource = resources.get(uris.get(i));
+			assertThat(resource.isLoaded(), is(true));
+			assertThat(resource.getResourceSet(), is(resourceSet));
+			assertThat(resource.getTimeStamp() > 0, is(true));
+			assertThat(((TargetObject) resource.getContents().get(0)).getSingleAttribute(), is("junit " + i));
+		}
+
+		assertThat(resourceSet.getResource(uris.get(numberTargets), false), is(nullValue()));
+	}
+
+	@Test
+	public void testBulkLoaderResolve() throws IOException
+	{
+		// Setup : Store a primary object referencing several target objects in separate documents
+
+		int numberTargets = 3;
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			saveObject(targetObject);
+			primaryObject.getMultipleNonContainmentReference().add(targetObject);
+		}
+
+		saveObject(primaryObject);
+
+		ResourceSet resourceSet = createResourceSet();
+		PrimaryObject actual = (PrimaryObject) resourceSet.getEObject(EcoreUtil.getURI(primaryObject), true);
+
+		// Test : Resolve the references of the primary object
+
+		bulkLoaderLocator.getService().resolve(actual, 1, null);
+
+		// Verify : The references were resolved without navigating them
+
+		@SuppressWarnings("unchecked")
+		InternalEList<TargetObject> targets = (InternalEList<TargetObject>) actual.getMultipleNonContainmentReference();
+		assertThat(resourceSet.getResources().size(), is(numberTargets + 1));
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			assertThat(targets.basicGet(i).eIsProxy(), is(false));
+			assertThat(targets.basicGet(i).getSingleAttribute(), is("junit " + i));
+		}
+	}
+
+	@Test
+	public void testPrefetchAdapter() throws IOException
+	{
+		// Setup : Store a primary object containing several target objects in separate documents
+
+		int numberTargets = 5;
+		ResourceSet resourceSet = createResourceSet();
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			saveObject(resourceSet, targetObject);
+			primaryObject.getMultipleContainmentReferenceProxies().add(targetObject);
+		}
+
+		saveObject(primaryObject);
+
+		resourceSet = createResourceSet();
+		PrimaryObject actual = (PrimaryObject) resourceSet.getEObject(EcoreUtil.getURI(primaryObject), true);
+		actual.eAdapters().add(new PrefetchAdapter(bulkLoaderLocator.getService(), 2, 4, null));
+
+		// Test : Resolve the targets in order
+
+		List<TargetObject> targets = actual.getMultipleContainmentReferenceProxies();
+
+		// Verify : The targets following the one resolved are loaded in a growing window
+
+		assertThat(targets.get(0).getSingleAttribute(), is("junit 0"));
+		assertThat(resourceSet.getResources().size(), is(4));
+		assertThat(targets.get(1).getSingleAttribute(), is("junit 1"));
+		assertThat(resourceSet.getResources().size(), is(4));
+		assertThat(targets.get(2).getSingleAttribute(), is("junit 2"));
+		assertThat(resourceSet.getResources().size(), is(numberTargets + 1));
+
+		for (int i = 3; i < numberTargets; i++)
+			assertThat(targets.get(i).getSingleAttribute(), is("junit " + i));
+
+		assertThat(resourceSet.getResources().size(), is(numberTargets + 1));
+	}
+
+	@Test
+	public void testCoalesceLoads() throws Exception
+	{
+		// Setup : Store several target objects in the database
+
+		int numberTargets = 3;
+		final ArrayList<URI> uris = new ArrayList<URI>();
+
+		for (int i = 0; i < numberTargets; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			saveObject(targetObject);
+			uris.add(targetObject.eResource().getURI());
+		}
+
+		// Test : Load each object twice concurrently in separate resource sets
+
+		ExecutorService executor = Executors.newFixedThreadPool(numberTargets * 2);
+		ArrayList<Future<TargetObject>> results = new ArrayList<Future<TargetObject>>();
+
+		try
+		{
+			for (int i = 0; i < numberTargets * 2; i++)
+			{
+				final URI uri = uris.get(i % numberTargets);
+
+				results.add(executor.submit(new Callable<TargetObject>()
+				{
+					@Override
+					public TargetObject call() throws Exception
+					{
+						ResourceSet resourceSet = createResourceSet();
+						resourceSet.getLoadOptions().put(Options.OPTION_COALESCE_LOADS, Boolean.TRUE);
+						resourceSet.getLoadOptions().put(Options.OPTION_COALESCING_WINDOW, 50);
+						return (TargetObject) resourceSet.getResource(uri, true).getContents().get(0);
+					}
+				}));
+			}
+
+			// Verify : Each load got its own copy of the object
+
+			for (int i = 0; i < numberTargets * 2; i++)
+			{
+				TargetObject targetObject = results.get(i).get();
+				assertThat(targetObject.getSingleAttribute(), is("junit " + (i % numberTargets)));
+
+				if (i >= numberTargets)
+					assertThat(targetObject == results.get(i - numberTargets).get(), is(false));
+			}
+		}
+		finally
+		{
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testDocumentCache() throws IOException
+	{
+		// Setup : Store a target object and load it through the document cache
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		saveObject(targetObject);
+
+		URI uri = targetObject.eResource().getURI();
+		DBObject query = new BasicDBObject(Keywords.ID_KEY, MongoUtils.getID(uri));
+		HashMap<String, Object> trustedOptions = new HashMap<String, Object>();
+		trustedOptions.put(Options.OPTION_DOCUMENT_CACHE, Boolean.TRUE);
+		trustedOptions.put(Options.OPTION_DOCUMENT_CACHE_MAX_AGE, 60000L);
+		HashMap<String, Object> validatedOptions = new HashMap<String, Object>();
+		validatedOptions.put(Options.OPTION_DOCUMENT_CACHE, Boolean.TRUE);
+
+		Resource resource = createResourceSet().createResource(uri);
+		resource.load(trustedOptions);
+
+		// Test : Change the document without going through EMF, save the object through EMF, then
+		// change the document and its time stamp without going through EMF
+
+		getCollection(ModelPackage.Literals.TARGET_OBJECT).update(query, new BasicDBObject("$set", new BasicDBObject("singleAttribute", "changed")));
+		Resource trustedResource = createResourceSet().createResource(uri);
+		trustedResource.load(trustedOptions);
+
+		targetObject.setSingleAttribute("saved");
+		targetObject.eResource().save(null);
+		Resource savedResource = createResourceSet().createResource(uri);
+		savedResource.load(trustedOptions);
+
+		DBObject update = new BasicDBObject("singleAttribute", "validated");
+		update.put(Keywords.TIME_STAMP_KEY, System.currentTimeMillis() + 1);
+		getCollection(ModelPackage.Literals.TARGET_OBJECT).update(query, new BasicDBObject("$set", update));
+		Resource validatedResource = createResourceSet().createResource(uri);
+		validatedResource.load(validatedOptions);
+
+		// Verify : The cached document is trusted until it is saved through EMF or its time stamp changes
+
+		assertThat(((TargetObject) resource.getContents().get(0)).getSingleAttribute(), is("junit"));
+		assertThat(((TargetObject) trustedResource.getContents().get(0)).getSingleAttribute(), is("junit"));
+		assertThat(((TargetObject) savedResource.getContents().get(0)).getSingleAttribute(), is("saved"));
+		assertThat(((TargetObject) validatedResource.getContents().get(0)).getSingleAttribute(), is("validated"));
+	}
+
+	@Test
+	public void testReloadIfModified() throws IOException
+	{
+		// Setup : Store a target object and load it into another resource set
+
+		TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+		targetObject.setSingleAttribute("junit");
+		saveObject(targetObject);
+
+		Resource resource = createResourceSet().getResource(targetObject.eResource().getURI(), true);
+		EObject loadedObject = resource.getContents().get(0);
+
+		// Test : Reload the resource before and after the object is changed
+
+		boolean reloadedUnchanged = MongoUtils.reloadIfModified(resource, null);
+		EObject unchangedObject = resource.getContents().get(0);
+
+		targetObject.setSingleAttribute("changed");
+		targetObject.eResource().save(null);
+		boolean reloadedChanged = MongoUtils.reloadIfModified(resource, null);
+
+		// Verify : The resource was only reloaded after the object changed
+
+		assertThat(reloadedUnchanged, is(false));
+		assertThat(unchangedObject == loadedObject, is(true));
+		assertThat(reloadedChanged, is(true));
+		assertThat(((TargetObject) resource.getContents().get(0)).getSingleAttribute(), is("changed"));
+		assertThat(resource.getTimeStamp(), is(targetObject.eResource().getTimeStamp()));
+	}
+
+	@Test
+	public void testRefreshQuery() throws IOException
+	{
+		// Setup : Store several target objects and query them
+
+		ArrayList<TargetObject> targetObjects = new ArrayList<TargetObject>();
+
+		for (int i = 0; i < 3; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("junit " + i);
+			saveObject(targetObject);
+			targetObjects.add(targetObject);
+		}
+
+		URI queryURI = createCollectionURI(ModelPackage.Literals.TARGET_OBJECT).appendQuery(URI.encodeQuery("", false));
+		Resource resource = createResourceSet().getResource(queryURI, true);
+		ECollection eCollection = (ECollection) resource.getContents().get(0);
+
+		// Test : Change, delete, and add an object, then refresh the query
+
+		targetObjects.get(1).setSingleAttribute("changed");
+		targetObjects.get(1).eResource().save(null);
+		targetObjects.get(2).eResource().delete(null);
+
+		TargetObject addedObject = ModelFactory.eINSTANCE.createTargetObject();
+		addedObject.setSingleAttribute("junit 3");
+		saveObject(addedObject);
+
+		MongoUtils.refresh(resource, null);
+
+		// Verify : The changes were merged into the collection of results
+
+		InternalEList<?> values = (InternalEList<?>) eCollection.getValues();
+		assertThat(resource.getContents().size(), is(1));
+		assertThat(resource.getContents().get(0), is((EObject) eCollection));
+		assertThat(values.size(), is(3));
+		assertThat(((TargetObject) values.basicGet(0)).getSingleAttribute(), is("junit 0"));
+		assertThat(((TargetObject) values.basicGet(1)).getSingleAttribute(), is("changed"));
+		assertThat(((TargetObject) values.basicGet(2)).getSingleAttribute(), is("junit 3"));
+		assertThat(resource.getTimeStamp(), is(addedObject.eResource().getTimeStamp()));
+	}
+
 	@Test
 	public void testXMIRepresentation() throws IOException
 	{
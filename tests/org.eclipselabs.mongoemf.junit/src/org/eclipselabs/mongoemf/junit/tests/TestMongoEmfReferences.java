@@ -452,4 +452,99 @@ public class TestMongoEmfReferences extends TestHarness
 		assertThat(((TargetObject) ((EObject) ((InternalEList<?>) primaryObject3.eGet(ModelPackage.Literals.PRIMARY_OBJECT__MULTIPLE_NON_CONTAINMENT_REFERENCE)).basicGet(0))).getSingleAttribute(),
 				is("one"));
 	}
+
+	@Test
+	public void testProxyAttributesForManyProxies() throws IOException
+	{
+		// Setup : Create a primary object referencing several target objects stored in their own resources
+
+		ResourceSet resourceSet = createResourceSet();
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+
+		for (int i = 0; i < 10; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("target " + i);
+			saveObject(resourceSet, targetObject);
+			primaryObject.getMultipleNonContainmentReference().add(targetObject);
+			targetObject.eResource().unload();
+
+			TargetObject containedObject = ModelFactory.eINSTANCE.createTargetObject();
+			containedObject.setSingleAttribute("contained " + i);
+			saveObject(resourceSet, containedObject);
+			primaryObject.getMultipleContainmentReferenceProxies().add(containedObject);
+			containedObject.eResource().unload();
+		}
+
+		saveObject(resourceSet, primaryObject);
+
+		// Test : Load the primary object with proxy attributes
+
+		ResourceSet resourceSet2 = createResourceSet();
+		resourceSet2.getLoadOptions().put(Options.OPTION_PROXY_ATTRIBUTES, Boolean.TRUE);
+		PrimaryObject primaryObject2 = (PrimaryObject) resourceSet2.getResource(primaryObject.eResource().getURI(), true).getContents().get(0);
+
+		// Verify : Check that every proxy has its attributes populated
+
+		InternalEList<?> nonContainmentTargets = (InternalEList<?>) primaryObject2.getMultipleNonContainmentReference();
+		InternalEList<?> containmentTargets = (InternalEList<?>) primaryObject2.getMultipleContainmentReferenceProxies();
+
+		assertThat(nonContainmentTargets.size(), is(10));
+		assertThat(containmentTargets.size(), is(10));
+
+		for (int i = 0; i < 10; i++)
+		{
+			TargetObject nonContainmentTarget = (TargetObject) nonContainmentTargets.basicGet(i);
+			TargetObject containmentTarget = (TargetObject) containmentTargets.basicGet(i);
+			assertTrue(nonContainmentTarget.eIsProxy());
+			assertTrue(containmentTarget.eIsProxy());
+			assertThat(nonContainmentTarget.getSingleAttribute(), is("target " + i));
+			assertThat(containmentTarget.getSingleAttribute(), is("contained " + i));
+		}
+	}
+
+	@Test
+	public void testPrimaryObjectWithDirectDecoding() throws IOException
+	{
+		// Setup : Create a primary object with embedded objects and references to target objects stored in their own resources
+
+		ResourceSet resourceSet = createResourceSet();
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+
+		TargetObject embeddedObject = ModelFactory.eINSTANCE.createTargetObject();
+		embeddedObject.setSingleAttribute("embedded");
+		primaryObject.setSingleContainmentReferenceNoProxies(embeddedObject);
+
+		for (int i = 0; i < 3; i++)
+		{
+			TargetObject targetObject = ModelFactory.eINSTANCE.createTargetObject();
+			targetObject.setSingleAttribute("target " + i);
+			saveObject(resourceSet, targetObject);
+			primaryObject.getMultipleNonContainmentReference().add(targetObject);
+
+			TargetObject containedObject = ModelFactory.eINSTANCE.createTargetObject();
+			containedObject.setSingleAttribute("contained " + i);
+			primaryObject.getMultipleContainmentReferenceNoProxies().add(containedObject);
+		}
+
+		saveObject(resourceSet, primaryObject);
+
+		// Test : Load the primary object building it straight from the BSON read from MongoDB
+
+		ResourceSet resourceSet2 = createResourceSet();
+		resourceSet2.getLoadOptions().put(Options.OPTION_DIRECT_DECODING, Boolean.TRUE);
+		resourceSet2.getLoadOptions().put(Options.OPTION_PROXY_ATTRIBUTES, Boolean.TRUE);
+		PrimaryObject primaryObject2 = (PrimaryObject) resourceSet2.getResource(primaryObject.eResource().getURI(), true).getContents().get(0);
+
+		// Verify : Check that the object is the same as the one saved and that the proxies have their attributes populated
+
+		EChecker.checkObject(primaryObject, primaryObject2);
+
+		InternalEList<?> nonContainmentTargets = (InternalEList<?>) primaryObject2.getMultipleNonContainmentReference();
+
+		for (int i = 0; i < 3; i++)
+			assertThat(((TargetObject) nonContainmentTargets.basicGet(i)).getSingleAttribute(), is("target " + i));
+	}
 }
@@ -0,0 +1,249 @@
+/*******************************************************************************
+ * Copyright (c) 2012 Bryan Hunt.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *    Bryan Hunt - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipselabs.mongoemf.junit.tests;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bson.types.ObjectId;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EPackage;
+import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EcoreFactory;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.emf.ecore.xmi.impl.URIHandlerImpl;
+import org.eclipselabs.eunit.junit.utils.ServiceLocator;
+import org.eclipselabs.mongoemf.ConverterService;
+import org.eclipselabs.mongoemf.Keywords;
+import org.eclipselabs.mongoemf.builders.DBObjectBuilderImpl;
+import org.eclipselabs.mongoemf.builders.DefaultEClassCache;
+import org.eclipselabs.mongoemf.builders.EObjectBuilderImpl;
+import org.eclipselabs.mongoemf.junit.model.ETypes;
+import org.eclipselabs.mongoemf.junit.model.ModelFactory;
+import org.eclipselabs.mongoemf.junit.model.ModelPackage;
+import org.eclipselabs.mongoemf.junit.model.PrimaryObject;
+import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+
+/**
+ * @author bhunt
+ *
+ */
+public class TestObjectBuilders extends TestHarness
+{
+	@Rule
+	public ServiceLocator<ConverterService> converterServiceLocator = new ServiceLocator<ConverterService>(ConverterService.class);
+
+	@Test
+	public void testDBObjectBuilderWithOverriddenValueConversion()
+	{
+		// Setup : Create a builder that converts attribute values its own way, and an object with
+		// single and multi-valued attributes that are converted
+
+		DBObjectBuilderImpl builder = new DBObjectBuilderImpl(converterServiceLocator.getService(), new URIHandlerImpl(), false)
+		{
+			@Override
+			protected Object convertEMFValueToMongoDBValue(EDataType eDataType, Object emfValue)
+			{
+				return "custom:" + super.convertEMFValueToMongoDBValue(eDataType, emfValue);
+			}
+		};
+
+		ETypes eTypes = ModelFactory.eINSTANCE.createETypes();
+		eTypes.setEBigDecimal(new BigDecimal("1.5"));
+		eTypes.getUris().add(URI.createURI("http://junit/0"));
+		eTypes.getUris().add(URI.createURI("http://junit/1"));
+
+		// Test : Build the object, the object for direct encoding, and a single value of the
+		// multi-valued attribute
+
+		DBObject dbObject = builder.buildDBObject(eTypes);
+		DBObject deferredDBObject = builder.buildDeferredDBObject(eTypes);
+		Object uri = builder.buildFeatureValue(eTypes, ModelPackage.Literals.ETYPES__URIS, 1);
+
+		// Verify : The values were converted by the overriding builder
+
+		assertThat(dbObject.get("eBigDecimal"), is((Object) "custom:1.5"));
+		assertThat(((List<?>) dbObject.get("uris")).get(0), is((Object) "custom:http://junit/0"));
+		assertThat(deferredDBObject, is(instanceOf(BasicDBObject.class)));
+		assertThat(deferredDBObject.get("eBigDecimal"), is((Object) "custom:1.5"));
+		assertThat(uri, is((Object) "custom:http://junit/1"));
+	}
+
+	@Test
+	public void testDBObjectBuilderWithoutOverrides()
+	{
+		// Setup : Create a builder that does not override any of its functions
+
+		DBObjectBuilderImpl builder = new DBObjectBuilderImpl(converterServiceLocator.getService(), new URIHandlerImpl(), false);
+		ETypes eTypes = ModelFactory.eINSTANCE.createETypes();
+		eTypes.setEBigDecimal(new BigDecimal("1.5"));
+
+		// Test : Build the object and the object for direct encoding
+
+		DBObject dbObject = builder.buildDBObject(eTypes);
+		DBObject deferredDBObject = builder.buildDeferredDBObject(eTypes);
+
+		// Verify : The values were converted by the converter service, and the object for direct
+		// encoding is deferred
+
+		assertThat(dbObject.get("eBigDecimal"), is((Object) "1.5"));
+		assertThat(deferredDBObject, is(not(instanceOf(BasicDBObject.class))));
+	}
+
+	@Test
+	public void testDBObjectBuilderWithOverriddenReference()
+	{
+		// Setup : Create a builder that writes references its own way, and an object with an
+		// embedded object
+
+		DBObjectBuilderImpl builder = new DBObjectBuilderImpl(converterServiceLocator.getService(), new URIHandlerImpl(), false)
+		{
+			@Override
+			protected void buildReference(EObject eObject, DBObject dbObject, EReference reference)
+			{
+				dbObject.put(reference.getName(), "custom");
+			}
+		};
+
+		PrimaryObject primaryObject = ModelFactory.eINSTANCE.createPrimaryObject();
+		primaryObject.setName("junit");
+		primaryObject.setSingleContainmentReferenceNoProxies(ModelFactory.eINSTANCE.createTargetObject());
+
+		// Test : Build the object for direct encoding
+
+		DBObject deferredDBObject = builder.buildDeferredDBObject(primaryObject);
+
+		// Verify : The object is not deferred, so the direct encoder does not write the reference
+		// the default way
+
+		assertThat(deferredDBObject, is(instanceOf(BasicDBObject.class)));
+		assertThat(deferredDBObject.get("singleContainmentReferenceNoProxies"), is((Object) "custom"));
+	}
+
+	@Test
+	public void testEClassCacheInvalidatedWhenPackageRegisteredAgain()
+	{
+		// Setup : Register a package and look up its class through the cache
+
+		String nsURI = "http://junit/" + new ObjectId();
+		EPackage ePackage = createPackage(nsURI);
+		EPackage.Registry.INSTANCE.put(nsURI, ePackage);
+
+		try
+		{
+			DefaultEClassCache eClassCache = new DefaultEClassCache();
+			String eClassURI = EcoreUtil.getURI(ePackage.getEClassifier("Thing")).toString();
+			EClass cachedEClass = eClassCache.getEClass(createResourceSet(), eClassURI);
+
+			// Test : Register a different package under the same namespace URI and look up the class
+			// again
+
+			EPackage replacementPackage = createPackage(nsURI);
+			EPackage.Registry.INSTANCE.put(nsURI, replacementPackage);
+			EClass eClass = eClassCache.getEClass(createResourceSet(), eClassURI);
+
+			// Verify : The class of the first package was cached, and the cached class was discarded
+			// for the class of the package now registered
+
+			assertThat(cachedEClass, is(ePackage.getEClassifier("Thing")));
+			assertThat(eClass, is(replacementPackage.getEClassifier("Thing")));
+			assertThat(eClassCache.getEClass(createResourceSet(), eClassURI), is(eClass));
+		}
+		finally
+		{
+			EPackage.Registry.INSTANCE.remove(nsURI);
+		}
+	}
+
+	@Test
+	public void testEObjectBuilderWithOverriddenHooks()
+	{
+		// Setup : Create a builder that converts attribute values its own way and records the
+		// references it builds, and the document of an object with an embedded object
+
+		final ArrayList<String> references = new ArrayList<String>();
+
+		EObjectBuilderImpl builder = new EObjectBuilderImpl(converterServiceLocator.getService(), new URIHandlerImpl(), false)
+		{
+			@Override
+			protected Object convertMongoDBValueToEMFValue(EDataType eDataType, Object dbValue)
+			{
+				return super.convertMongoDBValueToEMFValue(eDataType, ((String) dbValue).substring("custom:".length()));
+			}
+
+			@Override
+			protected void buildReference(DBCollection collection, DBObject dbObject, Resource resource, EObject eObject, EReference reference)
+			{
+				references.add(reference.getName());
+				super.buildReference(collection, dbObject, resource, eObject, reference);
+			}
+		};
+
+		DBObject eTypesDBObject = new BasicDBObject(Keywords.ECLASS_KEY, EcoreUtil.getURI(ModelPackage.Literals.ETYPES).toString());
+		eTypesDBObject.put("eBigDecimal", "custom:1.5");
+
+		DBObject targetDBObject = new BasicDBObject(Keywords.ECLASS_KEY, EcoreUtil.getURI(ModelPackage.Literals.TARGET_OBJECT).toString());
+		targetDBObject.put("singleAttribute", "embedded");
+		DBObject primaryDBObject = new BasicDBObject(Keywords.ECLASS_KEY, EcoreUtil.getURI(ModelPackage.Literals.PRIMARY_OBJECT).toString());
+		primaryDBObject.put("name", "junit");
+		primaryDBObject.put("singleContainmentReferenceNoProxies", targetDBObject);
+
+		DBCollection collection = getCollection(ModelPackage.Literals.PRIMARY_OBJECT);
+		Resource resource = createResourceSet().createResource(createObjectURI(ModelPackage.Literals.PRIMARY_OBJECT, "ID"));
+
+		// Test : Build the objects from the documents
+
+		ETypes eTypes = (ETypes) builder.buildEObject(collection, eTypesDBObject, resource, false);
+		PrimaryObject primaryObject = (PrimaryObject) builder.buildEObject(collection, primaryDBObject, resource, false);
+
+		// Verify : The values were converted and the references built by the overriding builder,
+		// which does not hand out the decoders that would bypass it
+
+		assertThat(eTypes.getEBigDecimal(), is(new BigDecimal("1.5")));
+		assertThat(primaryObject.getSingleContainmentReferenceNoProxies().getSingleAttribute(), is("embedded"));
+		assertThat(references.contains("singleContainmentReferenceNoProxies"), is(true));
+		assertThat(builder.getDBDecoderFactory(resource, false), is(DefaultDBDecoder.FACTORY));
+	}
+
+	/**
+	 * @param nsURI the namespace URI of the package
+	 * @return a new package with a class named Thing
+	 */
+	private EPackage createPackage(String nsURI)
+	{
+		EPackage ePackage = EcoreFactory.eINSTANCE.createEPackage();
+		ePackage.setName("junit");
+		ePackage.setNsPrefix("junit");
+		ePackage.setNsURI(nsURI);
+		EClass eClass = EcoreFactory.eINSTANCE.createEClass();
+		eClass.setName("Thing");
+		ePackage.getEClassifiers().add(eClass);
+		return ePackage;
+	}
+}
@@ -13,6 +13,7 @@ package org.eclipselabs.mongoemf.query.simple.junit.tests;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 import java.io.IOException;
@@ -31,18 +32,26 @@ import org.eclipse.emf.ecore.EcoreFactory;
 import org.eclipse.emf.ecore.EcorePackage;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.URIConverter;
 import org.eclipse.emf.ecore.util.EcoreUtil;
 import org.eclipselabs.emodeling.ECollection;
+import org.eclipselabs.eunit.junit.utils.ServiceLocator;
+import org.eclipselabs.mongoemf.CachingQueryEngine;
+import org.eclipselabs.mongoemf.MongoUtils;
 import org.eclipselabs.mongoemf.Options;
+import org.eclipselabs.mongoemf.QueryCache;
+import org.eclipselabs.mongoemf.QueryEngine;
 import org.eclipselabs.mongoemf.junit.model.ETypes;
 import org.eclipselabs.mongoemf.junit.model.PrimaryObject;
 import org.eclipselabs.mongoemf.junit.model.TargetObject;
 import org.eclipselabs.mongoemf.junit.support.TestHarness;
+import org.eclipselabs.mongoemf.model.MongoQuery;
 import org.eclipselabs.mongoemf.query.simple.junit.model.Library;
 import org.eclipselabs.mongoemf.query.simple.junit.model.ModelPackage;
 import org.eclipselabs.mongoemf.query.simple.junit.model.Person;
 import org.junit.Before;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
 
 import com.mongodb.BasicDBObject;
@@ -55,6 +64,9 @@ import com.mongodb.DBObject;
  */
 public class TestMongoEmfQuery extends TestHarness
 {
+	@Rule
+	public ServiceLocator<QueryEngine> queryEngineLocator = new ServiceLocator<QueryEngine>(QueryEngine.class);
+
 	@Before
 	public void setUp() throws UnknownHostException
 	{
@@ -296,6 +308,357 @@ public class TestMongoEmfQuery extends TestHarness
 		assertThat(author.getName(), is("Stephen King"));
 	}
 
+	@Test
+	public void testQueryPersonWithClauses()
+	{
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		ResourceSet resourceSet = createResourceSet();
+		resourceSet.getLoadOptions().put(Options.OPTION_QUERY_READ_AHEAD, Boolean.TRUE);
+
+		Resource resource = resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, "name != 'Ed Merks' batchSize 1 maxTimeMS 60000 hint name noCursorTimeout"), true);
+		assertThat(resource, is(notNullValue()));
+		assertThat(resource.getContents().size(), is(1));
+
+		ECollection eCollection = (ECollection) resource.getContents().get(0);
+		assertThat(eCollection.getValues().size(), is(2));
+		assertThat(((Person) eCollection.getValues().get(0)).getName(), is("Bryan Hunt"));
+		assertThat(((Person) eCollection.getValues().get(1)).getName(), is("Stephen King"));
+	}
+
+	@Test
+	public void testQueryPersonSortedPage()
+	{
+		// Setup : Create the authors
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+		createAuthor("Dean Kontz");
+
+		// Test : Query the second page of two authors in descending order of name
+
+		ResourceSet resourceSet = createResourceSet();
+		Resource resource = resourceSet.getResource(createQueryURI(ModelPackage.Literals.PERSON, "name != 'Dean Kontz' select name orderBy name desc offset 1 limit 2"), true);
+
+		// Verify : Only the page was read, in order
+
+		ECollection eCollection = (ECollection) resource.getContents().get(0);
+		assertThat(eCollection.getValues().size(), is(2));
+		assertThat(((Person) eCollection.getValues().get(0)).getName(), is("Ed Merks"));
+		assertThat(((Person) eCollection.getValues().get(1)).getName(), is("Bryan Hunt"));
+	}
+
+	@Test
+	public void testQueryClauseKeywordsInValues()
+	{
+		// Setup : Create a query that uses clause keywords inside a literal, as an operand and as
+		// values of clauses
+
+		URI uri = createQueryURI(ModelPackage.Literals.PERSON, "name != 'x limit 5' && (offset == 2) select name, limit orderBy limit desc hint offset");
+
+		// Test : Build the query
+
+		MongoQuery mongoQuery = queryEngineLocator.getService().buildDBObjectQuery(uri);
+
+		// Verify : Only the keywords that start a clause were split off the filter expression
+
+		assertThat(mongoQuery.getFilter().toString().contains("x limit 5"), is(true));
+		assertThat(mongoQuery.getFilter().toString().contains("offset"), is(true));
+		assertThat(mongoQuery.getProjection().containsField("name"), is(true));
+		assertThat(mongoQuery.getProjection().containsField("limit"), is(true));
+		assertThat(mongoQuery.getSort(), is((DBObject) new BasicDBObject("limit", -1)));
+		assertThat(mongoQuery.getHint(), is((DBObject) new BasicDBObject("offset", 1)));
+		assertThat(mongoQuery.getSkip(), is(nullValue()));
+		assertThat(mongoQuery.getLimit(), is(nullValue()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testQueryClauseWithInvalidNumber()
+	{
+		// Setup : Create a query whose limit is not a number
+
+		URI uri = createQueryURI(ModelPackage.Literals.PERSON, "name != 'Ed Merks' limit ten");
+
+		// Test : Build the query
+
+		queryEngineLocator.getService().buildDBObjectQuery(uri);
+
+		// Verify : An IllegalArgumentException naming the clause was thrown
+	}
+
+	@Test
+	public void testQueryPages() throws IOException
+	{
+		// Setup : Create the authors
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+		createAuthor("Dean Kontz");
+		createAuthor("Stephen King");
+
+		URI uri = createQueryURI(ModelPackage.Literals.PERSON, "name != 'Ed Merks' orderBy name");
+		ArrayList<String> names = new ArrayList<String>();
+		int pageCount = 0;
+		String continuationToken = null;
+
+		// Test : Read the pages of two authors until there is no continuation token
+
+		do
+		{
+			HashMap<Object, Object> response = new HashMap<Object, Object>();
+			HashMap<String, Object> options = new HashMap<String, Object>();
+			options.put(Options.OPTION_QUERY_PAGE_SIZE, 2);
+			options.put(Options.OPTION_CONTINUATION_TOKEN, continuationToken);
+			options.put(URIConverter.OPTION_RESPONSE, response);
+
+			Resource resource = createResourceSet().createResource(uri);
+			resource.load(options);
+
+			for (Object value : ((ECollection) resource.getContents().get(0)).getValues())
+				names.add(((Person) value).getName());
+
+			continuationToken = (String) response.get(Options.RESPONSE_CONTINUATION_TOKEN);
+			pageCount++;
+		}
+		while (continuationToken != null);
+
+		// Verify : Each author was read once in order, and the last page was empty
+
+		assertThat(pageCount, is(3));
+		assertThat(names.size(), is(4));
+		assertThat(names.get(0), is("Bryan Hunt"));
+		assertThat(names.get(1), is("Dean Kontz"));
+		assertThat(names.get(2), is("Stephen King"));
+		assertThat(names.get(3), is("Stephen King"));
+	}
+
+	@Test
+	public void testRefreshSortedQuery() throws IOException
+	{
+		// Setup : Create the authors and query them in order of name
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Stephen King");
+
+		Resource resource = createResourceSet().getResource(createQueryURI(ModelPackage.Literals.PERSON, "orderBy name"), true);
+		ECollection eCollection = (ECollection) resource.getContents().get(0);
+
+		// Test : Add an author that sorts between the others, then refresh the query
+
+		createAuthor("Dean Kontz");
+		MongoUtils.refresh(resource, null);
+
+		// Verify : The added author is in its sorted place rather than at the end
+
+		assertThat(eCollection.getValues().size(), is(3));
+		assertThat(((Person) eCollection.getValues().get(0)).getName(), is("Bryan Hunt"));
+		assertThat(((Person) eCollection.getValues().get(1)).getName(), is("Dean Kontz"));
+		assertThat(((Person) eCollection.getValues().get(2)).getName(), is("Stephen King"));
+	}
+
+	@Test
+	public void testQueryCountAndExists() throws IOException
+	{
+		// Setup : Create the authors
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_QUERY_COUNT, Boolean.TRUE);
+		options.put(Options.OPTION_QUERY_EXISTS, Boolean.TRUE);
+
+		// Test : Count the matching authors and the authors of an empty result
+
+		HashMap<Object, Object> response = new HashMap<Object, Object>();
+		options.put(URIConverter.OPTION_RESPONSE, response);
+		Resource resource = createResourceSet().createResource(createQueryURI(ModelPackage.Literals.PERSON, "name != 'Ed Merks'"));
+		resource.load(options);
+
+		HashMap<Object, Object> emptyResponse = new HashMap<Object, Object>();
+		options.put(URIConverter.OPTION_RESPONSE, emptyResponse);
+		Resource emptyResource = createResourceSet().createResource(createQueryURI(ModelPackage.Literals.PERSON, "name == 'Dean Kontz'"));
+		emptyResource.load(options);
+
+		// Verify : Only the summaries were returned
+
+		assertThat(resource.getContents().size(), is(0));
+		assertThat((Long) response.get(Options.RESPONSE_COUNT), is(2L));
+		assertThat((Boolean) response.get(Options.RESPONSE_EXISTS), is(true));
+		assertThat((Long) emptyResponse.get(Options.RESPONSE_COUNT), is(0L));
+		assertThat((Boolean) emptyResponse.get(Options.RESPONSE_EXISTS), is(false));
+	}
+
+	@Test
+	public void testQueryCountWithHint() throws IOException
+	{
+		// Setup : Create the authors
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		HashMap<Object, Object> response = new HashMap<Object, Object>();
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_QUERY_COUNT, Boolean.TRUE);
+		options.put(URIConverter.OPTION_RESPONSE, response);
+
+		// Test : Count the matching authors using the index on the name and a time limit
+
+		Resource resource = createResourceSet().createResource(createQueryURI(ModelPackage.Literals.PERSON, "name != 'Ed Merks' hint name maxTimeMS 60000 limit 1"));
+		resource.load(options);
+
+		// Verify : The count command accepted the hint and the time limit, and counted up to the limit
+
+		assertThat((Long) response.get(Options.RESPONSE_COUNT), is(1L));
+	}
+
+	@Test
+	public void testQueryEngineCache()
+	{
+		// Setup : Create an author and a query that no other test runs
+
+		createAuthor("Bryan Hunt");
+
+		QueryEngine queryEngine = queryEngineLocator.getService();
+		assertThat(queryEngine instanceof CachingQueryEngine, is(true));
+		QueryCache queryCache = ((CachingQueryEngine) queryEngine).getQueryCache();
+		URI uri = createQueryURI(ModelPackage.Literals.PERSON, "name != '" + new ObjectId() + "'");
+		long hitCount = queryCache.getHitCount();
+		long missCount = queryCache.getMissCount();
+
+		// Test : Load the query twice
+
+		Resource firstResource = createResourceSet().getResource(uri, true);
+		Resource secondResource = createResourceSet().getResource(uri, true);
+
+		// Verify : The query was only built for the first load, and both loads read the author
+
+		assertThat(queryCache.getMissCount(), is(missCount + 1));
+		assertThat(queryCache.getHitCount(), is(hitCount + 1));
+		assertThat(((ECollection) firstResource.getContents().get(0)).getValues().size(), is(1));
+		assertThat(((ECollection) secondResource.getContents().get(0)).getValues().size(), is(1));
+	}
+
+	@Test
+	public void testQueryCache()
+	{
+		// Setup : Cache a query
+
+		QueryCache queryCache = new QueryCache(1);
+		MongoQuery mongoQuery = org.eclipselabs.mongoemf.model.ModelFactory.eINSTANCE.createMongoQuery();
+		mongoQuery.setFilter(new BasicDBObject("name", new BasicDBObject("$in", new ArrayList<Object>(Collections.singletonList("Bryan Hunt")))));
+		mongoQuery.setLimit(10);
+		queryCache.put("name == 'Bryan Hunt'", mongoQuery);
+
+		// Test : Modify the query and the copies returned by the cache
+
+		mongoQuery.getFilter().put("age", 1);
+		MongoQuery cachedQuery = queryCache.get("name == 'Bryan Hunt'");
+		((List<?>) ((DBObject) cachedQuery.getFilter().get("name")).get("$in")).clear();
+		MongoQuery secondQuery = queryCache.get("name == 'Bryan Hunt'");
+		MongoQuery missingQuery = queryCache.get("name == 'Ed Merks'");
+		queryCache.put("name == 'Ed Merks'", mongoQuery);
+
+		// Verify : The cached query was not changed and the lookups were counted
+
+		assertThat(secondQuery.getFilter().keySet().size(), is(1));
+		assertThat(((List<?>) ((DBObject) secondQuery.getFilter().get("name")).get("$in")).size(), is(1));
+		assertThat(secondQuery.getLimit(), is(10));
+		assertThat(missingQuery, is(nullValue()));
+		assertThat(queryCache.getHitCount(), is(2L));
+		assertThat(queryCache.getMissCount(), is(1L));
+		assertThat(queryCache.size(), is(1));
+	}
+
+	@Test
+	public void testQueryParameters() throws IOException
+	{
+		// Setup : Create the authors and a query template
+
+		createAuthor("Bryan Hunt");
+		createAuthor("Ed Merks");
+		createAuthor("Stephen King");
+
+		URI uri = createQueryURI(ModelPackage.Literals.PERSON, "(name != :first) && (name != :second)");
+		HashMap<String, Object> parameters = new HashMap<String, Object>();
+		HashMap<String, Object> options = new HashMap<String, Object>();
+		options.put(Options.OPTION_QUERY_PARAMETERS, parameters);
+
+		// Test : Run the query with two sets of values
+
+		parameters.put("first", "Bryan Hunt");
+		parameters.put("second", "Ed Merks");
+		Resource firstResource = createResourceSet().createResource(uri);
+		firstResource.load(options);
+
+		parameters.put("first", "Stephen King");
+		Resource secondResource = createResourceSet().createResource(uri);
+		secondResource.load(options);
+
+		parameters.remove("second");
+		Resource unboundResource = createResourceSet().createResource(uri);
+		IOException unboundException = null;
+
+		try
+		{
+			unboundResource.load(options);
+		}
+		catch (IOException e)
+		{
+			unboundException = e;
+		}
+
+		// Verify : Each run used the values bound to it
+
+		ECollection firstCollection = (ECollection) firstResource.getContents().get(0);
+		assertThat(firstCollection.getValues().size(), is(1));
+		assertThat(((Person) firstCollection.getValues().get(0)).getName(), is("Stephen King"));
+
+		ECollection secondCollection = (ECollection) secondResource.getContents().get(0);
+		assertThat(secondCollection.getValues().size(), is(1));
+		assertThat(((Person) secondCollection.getValues().get(0)).getName(), is("Bryan Hunt"));
+
+		assertThat(unboundException, is(notNullValue()));
+	}
+
+	@Test
+	public void testQueryFoldedConditions() throws IOException
+	{
+		// Setup : Save objects with the values 1 to 5
+
+		ResourceSet resourceSet = createResourceSet();
+
+		for (int i = 1; i <= 5; i++)
+		{
+			ETypes eTypes = org.eclipselabs.mongoemf.junit.model.ModelFactory.eINSTANCE.createETypes();
+			eTypes.setEInt(i);
+			Resource resource = resourceSet.createResource(createCollectionURI(org.eclipselabs.mongoemf.junit.model.ModelPackage.Literals.ETYPES));
+			resource.getContents().add(eTypes);
+			resource.save(null);
+		}
+
+		// Test : Query with alternatives on one field and with overlapping bounds on one field
+
+		resourceSet = createResourceSet();
+		Resource orResource = resourceSet.getResource(createQueryURI(org.eclipselabs.mongoemf.junit.model.ModelPackage.Literals.ETYPES, "(eInt == 1) || (eInt == 2) || (eInt == 5)"), true);
+		Resource andResource = resourceSet.getResource(createQueryURI(org.eclipselabs.mongoemf.junit.model.ModelPackage.Literals.ETYPES, "(eInt > 3) && (eInt > 1) && (eInt <= 4)"), true);
+
+		// Verify : The alternatives and the tighter bounds were applied
+
+		ECollection orCollection = (ECollection) orResource.getContents().get(0);
+		assertThat(orCollection.getValues().size(), is(3));
+
+		ECollection andCollection = (ECollection) andResource.getContents().get(0);
+		assertThat(andCollection.getValues().size(), is(1));
+		assertThat(((ETypes) andCollection.getValues().get(0)).getEInt(), is(4));
+	}
+
 	@Test
 	public void testQueryDefaultAttribute() throws IOException
 	{